@@ -0,0 +1,116 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: AstCache.java
+*/
+
+import absyn.*;
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/* A directory of parsed trees, so unchanged sources are not lexed and
+   parsed again. An entry is named after the SHA-256 hash of the source
+   text and holds the compiler version followed by the tree as written by
+   AstSerializer; it is read back with one bulk read. The version is a
+   checksum of the classes that decide the tree's shape (lexer, parser
+   and serializer), so entries written by another build are ignored and
+   replaced. Only trees of sources that parsed without errors are stored,
+   as a cached tree cannot report the parse's errors again. The cache is
+   best effort: unreadable entries are misses and failed writes are
+   dropped. */
+public class AstCache {
+    private final static String[] VERSION_CLASSES = { "Lexer.class", "parser.class", "AstSerializer.class" };
+    private static long version = -1;
+
+    private Path directory;
+
+    public AstCache(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    // The tree stored for this source, or null if there is none
+    public Absyn load(SourceFile source) {
+        byte[] text = source.getBytes();
+        if (text == null) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(entry(text));
+            if (data.length < 8 || readLong(data) != version()) {
+                return null;
+            }
+            return AstSerializer.deserialize(data, 8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void store(SourceFile source, Absyn tree) {
+        byte[] text = source.getBytes();
+        if (text == null) {
+            return;
+        }
+        byte[] data = AstSerializer.serialize(tree);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "ast", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                long v = version();
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (v >>> shift));
+                }
+                out.write(data);
+            }
+            // Readers see either the old entry or the complete new one
+            Files.move(temp, entry(text), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private Path entry(byte[] text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text);
+            StringBuilder name = new StringBuilder(hash.length * 2 + 4);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(name.append(".ast").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM provides SHA-256
+        }
+    }
+
+    private static long readLong(byte[] data) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static synchronized long version() {
+        if (version < 0) {
+            CRC32 crc = new CRC32();
+            for (String name : VERSION_CLASSES) {
+                try (InputStream in = AstCache.class.getResourceAsStream("/" + name)) {
+                    if (in != null) {
+                        crc.update(in.readAllBytes());
+                    }
+                } catch (IOException e) {
+                    // Left out of the checksum
+                }
+            }
+            version = crc.getValue();
+        }
+        return version;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: AstSerializer.java
+*/
+
+import absyn.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/* A compact binary encoding of an absyn tree, for AstCache. The data
+   starts with MAGIC and the identifiers used by the tree, each once;
+   the tree follows in preorder. Every node is a tag byte (a FlatAst kind,
+   or NULL for a missing child) followed by its row as the difference to
+   the previous node's row and its column, then its own fields: names as
+   indexes into the identifier table, numbers as varints (zigzag encoded
+   where they may be negative) and children as nested nodes. Lists are a
+   count followed by their elements. Only what the parser sets is kept:
+   semantic results (dtype, binding) are not. Trees are written through
+   AbsynWalker and read back with an explicit stack, so they can be
+   nested to any depth. */
+public class AstSerializer implements AbsynHooks {
+    private final static byte[] MAGIC = { 'C', 'M', 'A', 'S' };
+    private final static int NULL = 0x7F;
+
+    private byte[] data;
+    private int size;
+    private int pos;
+    private int lastRow;
+    // Writing: Names ID -> index in the identifier table, in order of first use
+    private IdIndex nameIndex;
+    // Reading: index in the identifier table -> Names ID
+    private int[] nameIds;
+    // Reading: the node begin() read completely, if it returned null
+    private Absyn completed;
+
+    // A node being read whose children are still to come
+    private static class Pending {
+        int tag, row, col, id, value;
+        Absyn[] children;
+        int next;
+    }
+
+    private AstSerializer(byte[] data) {
+        this.data = data;
+    }
+
+    public static byte[] serialize(Absyn tree) {
+        // The tree is encoded first, collecting the identifiers it uses
+        AstSerializer nodes = new AstSerializer(new byte[4096]);
+        nodes.nameIndex = new IdIndex();
+        nodes.write(tree);
+
+        AstSerializer out = new AstSerializer(new byte[256]);
+        out.bytes(MAGIC, MAGIC.length);
+        out.varint(nodes.nameIndex.size());
+        for (int i = 0; i < nodes.nameIndex.size(); i++) {
+            byte[] name = Names.name(nodes.nameIndex.id(i)).getBytes(StandardCharsets.UTF_8);
+            out.varint(name.length);
+            out.bytes(name, name.length);
+        }
+        out.bytes(nodes.data, nodes.size);
+        return Arrays.copyOf(out.data, out.size);
+    }
+
+    // Rebuilds a tree; throws if the data is not a complete encoding
+    public static Absyn deserialize(byte[] data) throws IOException {
+        return deserialize(data, 0);
+    }
+
+    // Rebuilds a tree encoded in data from offset to the end
+    public static Absyn deserialize(byte[] data, int offset) throws IOException {
+        AstSerializer in = new AstSerializer(data);
+        in.pos = offset;
+        try {
+            for (byte b : MAGIC) {
+                if (in.data[in.pos++] != b) {
+                    throw new IOException("Not a serialized tree");
+                }
+            }
+            in.nameIds = new int[in.count()];
+            for (int i = 0; i < in.nameIds.length; i++) {
+                int length = in.varint();
+                in.nameIds[i] = Names.id(new String(in.data, in.pos, length, StandardCharsets.UTF_8));
+                in.pos += length;
+            }
+            Absyn tree = in.readNode();
+            if (in.pos != data.length) {
+                throw new IOException("Trailing data after serialized tree");
+            }
+            return tree;
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException("Corrupt serialized tree", e);
+        }
+    }
+
+    /* ------------------------------ Writing ------------------------------ */
+
+    private void ensure(int extra) {
+        if (size + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(size + extra, data.length * 2));
+        }
+    }
+
+    private void bytes(byte[] b, int length) {
+        ensure(length);
+        System.arraycopy(b, 0, data, size, length);
+        size += length;
+    }
+
+    private void tag(int tag) {
+        ensure(1);
+        data[size++] = (byte) tag;
+    }
+
+    private void varint(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            data[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[size++] = (byte) value;
+    }
+
+    private void signed(int value) {
+        varint((value << 1) ^ (value >> 31));
+    }
+
+    private void name(int id) {
+        varint(nameIndex.add(id));
+    }
+
+    private void position(Absyn node) {
+        signed(node.row - lastRow);
+        lastRow = node.row;
+        signed(node.col);
+    }
+
+    private void write(Absyn tree) {
+        if (!(tree instanceof Exp)) {
+            list(tree);
+        }
+        AbsynWalker.walk(tree, this, 0);
+    }
+
+    // A missing child, or the count of a list's elements
+    private void list(Absyn list) {
+        if (list == null) {
+            tag(NULL);
+        } else if (list instanceof ExpList) {
+            tag(FlatAst.EXPLIST);
+            int count = 0;
+            for (ExpList l = (ExpList) list; l != null; l = l.tail) {
+                count += l.head != null ? 1 : 0;
+            }
+            varint(count);
+        } else {
+            tag(FlatAst.VARDECLIST);
+            int count = 0;
+            for (VarDecList l = (VarDecList) list; l != null; l = l.tail) {
+                count += l.head != null ? 1 : 0;
+            }
+            varint(count);
+        }
+    }
+
+    // Writes a node's tag, position and fields; its children follow
+    public boolean pre(Absyn tree, int level) {
+        if (tree instanceof AssignExp) {
+            tag(FlatAst.ASSIGN);
+            position(tree);
+        } else if (tree instanceof IfExp) {
+            tag(FlatAst.IF);
+            position(tree);
+        } else if (tree instanceof IntExp) {
+            tag(FlatAst.INT);
+            position(tree);
+            signed(((IntExp) tree).value);
+        } else if (tree instanceof OpExp) {
+            tag(FlatAst.OP);
+            position(tree);
+            varint(((OpExp) tree).op);
+        } else if (tree instanceof TypeExp) {
+            TypeExp exp = (TypeExp) tree;
+            tag(FlatAst.TYPE);
+            position(exp);
+            varint(exp.type | (exp.isArray ? FlatAst.ARRAY_FLAG : 0));
+        } else if (tree instanceof VarDeclExp) {
+            VarDeclExp exp = (VarDeclExp) tree;
+            tag(FlatAst.VARDECL);
+            position(exp);
+            name(exp.id);
+            signed(exp.size);
+        } else if (tree instanceof FunctionDec) {
+            tag(FlatAst.FUNCTION);
+            position(tree);
+            name(((FunctionDec) tree).id);
+        } else if (tree instanceof CompoundExp) {
+            tag(FlatAst.COMPOUND);
+            position(tree);
+        } else if (tree instanceof CallExp) {
+            tag(FlatAst.CALL);
+            position(tree);
+            name(((CallExp) tree).funcId);
+        } else if (tree instanceof WhileExp) {
+            tag(FlatAst.WHILE);
+            position(tree);
+        } else if (tree instanceof ReturnExp) {
+            tag(FlatAst.RETURN);
+            position(tree);
+        } else if (tree instanceof IndexVar) {
+            tag(FlatAst.INDEXVAR);
+            position(tree);
+            name(((IndexVar) tree).id);
+        } else if (tree instanceof SimpleVar) {
+            tag(FlatAst.SIMPLEVAR);
+            position(tree);
+            name(((SimpleVar) tree).id);
+        } else if (tree instanceof BoolExp) {
+            tag(FlatAst.BOOL);
+            position(tree);
+            varint(((BoolExp) tree).bool ? 1 : 0);
+        } else {
+            tag(FlatAst.NIL);
+            position(tree);
+        }
+        return true;
+    }
+
+    public int child(Absyn node, int slot, Absyn child, int level) {
+        if (!(child instanceof Exp)) {
+            list(child);
+        }
+        return level + 1;
+    }
+
+    /* ------------------------------ Reading ------------------------------ */
+
+    private int varint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // A number of items that follow, each at least one byte long
+    private int count() throws IOException {
+        int count = varint();
+        if (count < 0 || count > data.length - pos) {
+            throw new IOException("Corrupt serialized tree");
+        }
+        return count;
+    }
+
+    private int signed() throws IOException {
+        int value = varint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readName() throws IOException {
+        return nameIds[varint()];
+    }
+
+    private Absyn readNode() throws IOException {
+        ArrayDeque<Pending> stack = new ArrayDeque<>();
+        while (true) {
+            Pending pending = begin();
+            Absyn node = completed;
+            if (pending != null) {
+                if (pending.children.length > 0) {
+                    stack.push(pending);
+                    continue;
+                }
+                node = build(pending);
+            }
+            // Hand the node to its parents until one has children to come
+            while (true) {
+                Pending parent = stack.peek();
+                if (parent == null) {
+                    return node;
+                }
+                parent.children[parent.next++] = node;
+                if (parent.next < parent.children.length) {
+                    break;
+                }
+                stack.pop();
+                node = build(parent);
+            }
+        }
+    }
+
+    // Reads a node up to its children. Returns null after setting
+    // completed if it has none, otherwise the node to complete
+    private Pending begin() throws IOException {
+        int tag = data[pos++];
+        completed = null;
+        if (tag == NULL) {
+            return null;
+        }
+        Pending node = new Pending();
+        node.tag = tag;
+        if (tag == FlatAst.EXPLIST || tag == FlatAst.VARDECLIST) {
+            node.children = new Absyn[count()];
+            return node;
+        }
+        int row = lastRow + signed();
+        lastRow = row;
+        int col = signed();
+        node.row = row;
+        node.col = col;
+        int children;
+        switch (tag) {
+            case FlatAst.INT:
+                completed = new IntExp(row, col, signed());
+                return null;
+            case FlatAst.TYPE: {
+                int type = varint();
+                completed = new TypeExp(row, col, type & ~FlatAst.ARRAY_FLAG, (type & FlatAst.ARRAY_FLAG) != 0);
+                return null;
+            }
+            case FlatAst.SIMPLEVAR:
+                completed = new SimpleVar(row, col, readName());
+                return null;
+            case FlatAst.BOOL:
+                completed = new BoolExp(row, col, varint() != 0);
+                return null;
+            case FlatAst.NIL:
+                completed = new NilExp(row, col);
+                return null;
+            case FlatAst.OP:
+                node.value = varint();
+                children = 2;
+                break;
+            case FlatAst.VARDECL:
+                node.id = readName();
+                node.value = signed();
+                children = 1;
+                break;
+            case FlatAst.FUNCTION:
+                node.id = readName();
+                children = 3;
+                break;
+            case FlatAst.CALL:
+            case FlatAst.INDEXVAR:
+                node.id = readName();
+                children = 1;
+                break;
+            case FlatAst.ASSIGN:
+            case FlatAst.COMPOUND:
+            case FlatAst.WHILE:
+                children = 2;
+                break;
+            case FlatAst.IF:
+                children = 3;
+                break;
+            case FlatAst.RETURN:
+                children = 1;
+                break;
+            default:
+                throw new IOException("Unknown node tag " + tag);
+        }
+        node.children = new Absyn[children];
+        return node;
+    }
+
+    // Creates a node once all its children are read
+    private static Absyn build(Pending node) {
+        Absyn[] c = node.children;
+        int row = node.row;
+        int col = node.col;
+        switch (node.tag) {
+            case FlatAst.EXPLIST: {
+                ExpList list = null;
+                for (int i = c.length - 1; i >= 0; i--) {
+                    list = new ExpList((Exp) c[i], list);
+                }
+                return list;
+            }
+            case FlatAst.VARDECLIST: {
+                VarDecList list = null;
+                for (int i = c.length - 1; i >= 0; i--) {
+                    list = new VarDecList((VarDeclExp) c[i], list);
+                }
+                return list;
+            }
+            case FlatAst.ASSIGN:
+                return new AssignExp(row, col, (Exp) c[0], (Exp) c[1]);
+            case FlatAst.IF:
+                return new IfExp(row, col, (Exp) c[0], (ExpList) c[1], (ExpList) c[2]);
+            case FlatAst.OP:
+                return new OpExp(row, col, (Exp) c[0], node.value, (Exp) c[1]);
+            case FlatAst.VARDECL:
+                return new VarDeclExp(row, col, (TypeExp) c[0], node.id, node.value);
+            case FlatAst.FUNCTION:
+                return new FunctionDec(row, col, (TypeExp) c[0], node.id, (VarDecList) c[1], (CompoundExp) c[2]);
+            case FlatAst.COMPOUND:
+                return new CompoundExp(row, col, (VarDecList) c[0], (ExpList) c[1]);
+            case FlatAst.CALL:
+                return new CallExp(row, col, node.id, (ExpList) c[0]);
+            case FlatAst.WHILE:
+                return new WhileExp(row, col, (Exp) c[0], (Exp) c[1]);
+            case FlatAst.RETURN:
+                return new ReturnExp(row, col, (Exp) c[0]);
+            default:
+                return new IndexVar(row, col, node.id, (Exp) c[0]);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: BatchCompiler.java
+*/
+
+import absyn.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/* Compiles many source files in one JVM. Every file goes through
+   Main.compile with the batch's options, like a command line of its own,
+   with its messages and Diagnostics written into a buffer. The files are
+   compiled on a ForkJoinPool, each worker resetting one parser of its
+   own for every file. Results are printed in the order the files were
+   given, each as soon as it and every file before it are done, and a
+   throughput summary follows the last one. */
+public class BatchCompiler {
+    // Outcome of compiling one file
+    private static class Result {
+        String filename;
+        long bytes;
+        long nanos;
+        int errors;
+        String messages;
+        Throwable failure;
+    }
+
+    private int threads;
+    private boolean optimize;
+    private boolean generateCode;
+    private boolean json;
+    private int maxErrors;
+    private boolean failFast;
+    private int recoveryLimit;
+    private long parseBudget;
+    private String cacheDirectory;
+    private boolean stats;
+
+    private ThreadLocal<parser> parsers = ThreadLocal.withInitial(() -> {
+        parser p = new parser(new Lexer(new StringReader("")));
+        p.exitOnFatalError = false;
+        return p;
+    });
+
+    public BatchCompiler(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    public void setGenerateCode(boolean generateCode) {
+        this.generateCode = generateCode;
+    }
+
+    public void setJson(boolean json) {
+        this.json = json;
+    }
+
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public void setRecoveryLimit(int recoveryLimit) {
+        this.recoveryLimit = recoveryLimit;
+    }
+
+    // Milliseconds each file may spend parsing, 0 for no limit
+    public void setParseBudget(long parseBudget) {
+        this.parseBudget = parseBudget;
+    }
+
+    // Directory of an AstCache for parsed trees, null for none
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    // Prints the phase statistics of every file with its messages
+    public void setStats(boolean stats) {
+        this.stats = stats;
+    }
+
+    /* Expands the command line arguments into source files: directories
+       contribute their .cm files (recursively, sorted by path) and an
+       argument "@list" names a file listing one source per line. */
+    public static List<File> collectSources(List<String> args) throws IOException {
+        ArrayList<File> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("@")) {
+                try (BufferedReader list = new BufferedReader(new FileReader(arg.substring(1)))) {
+                    String line;
+                    while ((line = list.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            files.add(new File(line));
+                        }
+                    }
+                }
+            } else {
+                File file = new File(arg);
+                if (file.isDirectory()) {
+                    addDirectory(file, files);
+                } else {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void addDirectory(File dir, List<File> files) {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        Arrays.sort(entries);
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                addDirectory(entry, files);
+            } else if (entry.getName().endsWith(".cm")) {
+                files.add(entry);
+            }
+        }
+    }
+
+    // Compiles every file, writing results to out. Returns the number of files with errors.
+    public int compileAll(List<File> files, PrintStream out) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayList<Future<Result>> results = new ArrayList<>(files.size());
+        for (File file : files) {
+            results.add(pool.submit(() -> compile(file)));
+        }
+
+        int failed = 0;
+        long bytes = 0;
+        long cpuNanos = 0;
+        for (Future<Result> future : results) {
+            Result result;
+            try {
+                result = future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Batch compilation interrupted", e);
+            }
+            bytes += result.bytes;
+            cpuNanos += result.nanos;
+            if (result.errors > 0 || result.failure != null) {
+                failed++;
+            }
+            print(result, out);
+        }
+        pool.shutdown();
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        out.printf("Compiled %d files (%d with errors) in %.3f s on %d threads: %.1f files/s, %.1f KB/s, %.3f s compiling%n",
+                   files.size(), failed, seconds, threads, files.size() / seconds,
+                   bytes / 1024.0 / seconds, cpuNanos / 1e9);
+        out.flush();
+        return failed;
+    }
+
+    private void print(Result result, PrintStream out) {
+        if (result.failure != null) {
+            out.println(result.filename + ": failed: " + result.failure);
+        } else if (result.errors > 0) {
+            out.println(result.filename + ": " + result.errors + (result.errors == 1 ? " error" : " errors"));
+        } else {
+            out.println(result.filename + ": ok");
+        }
+        out.print(result.messages);
+    }
+
+    // The command line compiling one file with the batch's options
+    private String[] arguments(File file) {
+        ArrayList<String> args = new ArrayList<>();
+        if (optimize) {
+            args.add("-O");
+        }
+        if (generateCode) {
+            args.add("-c");
+        }
+        if (json) {
+            args.add("-json");
+        }
+        if (stats) {
+            args.add("-stats");
+        }
+        if (maxErrors > 0) {
+            args.add("-maxerrors");
+            args.add(Integer.toString(maxErrors));
+        }
+        if (failFast) {
+            args.add("-failfast");
+        }
+        if (recoveryLimit > 0) {
+            args.add("-maxrecover");
+            args.add(Integer.toString(recoveryLimit));
+        }
+        if (parseBudget > 0) {
+            args.add("-parsebudget");
+            args.add(Long.toString(parseBudget));
+        }
+        if (cacheDirectory != null) {
+            args.add("-cache");
+            args.add(cacheDirectory);
+        }
+        args.add(file.getPath());
+        return args.toArray(new String[0]);
+    }
+
+    // Runs the whole pipeline for one file; never throws
+    private Result compile(File file) {
+        Result result = new Result();
+        result.filename = file.getPath();
+        result.bytes = file.length();
+        long start = System.nanoTime();
+
+        // Progress messages are dropped; errors and statistics are kept
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(messages);
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        Diagnostics diagnostics = new Diagnostics(new OutputStreamWriter(err));
+        if (json) {
+            diagnostics.setFilename(result.filename);
+        }
+
+        try {
+            int status = Main.compile(arguments(file), parsers.get(), null, out, err, diagnostics);
+            result.errors = diagnostics.getErrorCount();
+            if (status != Main.OK && result.errors == 0) {
+                result.errors = 1;
+            }
+        } catch (StackOverflowError e) {
+            result.failure = e;
+        }
+        err.flush();
+        result.messages = messages.toString();
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+}
@@ -0,0 +1,518 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: Benchmarks.java
+  To Run:
+    make bench
+  or
+    java -cp /usr/share/java/cup.jar:. Benchmarks [-quick] [-size chars] [name ...]
+*/
+
+import absyn.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/* Micro and end-to-end benchmarks for the compiler phases. Each case is
+   warmed up first and then timed over several rounds; a round repeats
+   the case until it has run for a minimum time, and the result of every
+   operation is folded into a checksum so no work can be optimized away.
+   Reported times are per operation, as the mean and standard deviation
+   of the rounds, followed by the bytes allocated per operation. The
+   workloads come from ProgramGenerator, except for the interpreter's,
+   which are fixed programs. */
+public class Benchmarks {
+    // One measured operation; returns a value that depends on its work
+    private interface Case {
+        long run() throws Exception;
+    }
+
+    private static class Benchmark {
+        String name;
+        String unit;
+        long units;
+        Case body;
+
+        Benchmark(String name, String unit, long units, Case body) {
+            this.name = name;
+            this.unit = unit;
+            this.units = units;
+            this.body = body;
+        }
+    }
+
+    // Declarations in the programs parse.scaling parses, and how much
+    // slower per declaration the largest may be than the smallest
+    private final static int[] SCALING_SIZES = { 10000, 100000, 1000000 };
+    private final static double SCALING_LIMIT = 3.0;
+
+    private long warmupMillis = 2000;
+    private long roundMillis = 1000;
+    private int rounds = 5;
+    private long checksum;
+    // Operations run by the last call to runFor
+    private long lastOps;
+
+    private ArrayList<Benchmark> benchmarks = new ArrayList<>();
+
+    /* ------------------------------- Cases ------------------------------- */
+
+    private void define(int size) throws Exception {
+        String large = ProgramGenerator.ofSize(size);
+        String wide = ProgramGenerator.wide(500);
+        String deep = ProgramGenerator.deep(300);
+        String longExp = ProgramGenerator.longExpressions(50, 400);
+        String random = new ProgramGenerator().generate(size);
+
+        add("lexer", "tokens", countTokens(large), () -> {
+            Lexer lexer = new Lexer(new StringReader(large));
+            long n = 0;
+            while (lexer.next_token() != null) {
+                n++;
+            }
+            return n;
+        });
+
+        File source = File.createTempFile("bench", ".cm");
+        source.deleteOnExit();
+        try (Writer out = new FileWriter(source)) {
+            out.write(large);
+        }
+        add("lexer.file.reader", "chars", large.length(), () -> {
+            try (Reader in = new FileReader(source)) {
+                return countTokens(new Lexer(in));
+            }
+        });
+        add("lexer.file.source", "chars", large.length(),
+            () -> countTokens(new Lexer(SourceFile.load(source.getPath()).reader())));
+
+        add("parse.wide", "chars", wide.length(), () -> parse(wide).hashCode());
+        add("parse.deep", "chars", deep.length(), () -> parse(deep).hashCode());
+        add("parse.long-expressions", "chars", longExp.length(), () -> parse(longExp).hashCode());
+        add("parse.random", "chars", random.length(), () -> parse(random).hashCode());
+
+        int[] ids = new int[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            ids[i] = Names.id(NAMES[i]);
+        }
+        for (int depth : new int[] { 1, 8, 64 }) {
+            SymbolTable table = scopes(depth);
+            add("symtab.lookup.depth-" + depth, "lookups", 1000, () -> {
+                long found = 0;
+                for (int i = 0; i < 1000; i++) {
+                    if (table.lookup(ids[i % ids.length]) != null) {
+                        found++;
+                    }
+                }
+                return found;
+            });
+        }
+
+        Absyn program = parse(large);
+        byte[] serialized = AstSerializer.serialize(program);
+        add("ast.serialize", "chars", large.length(), () -> AstSerializer.serialize(program).length);
+        add("ast.deserialize", "chars", large.length(), () -> AstSerializer.deserialize(serialized).hashCode());
+        program.accept(new SemanticAnalyzer(false, new Diagnostics(new StringWriter())), 0);
+        add("semantic.large", "chars", large.length(), () -> {
+            Diagnostics diagnostics = new Diagnostics(new StringWriter());
+            program.accept(new SemanticAnalyzer(false, diagnostics), 0);
+            return diagnostics.getErrorCount();
+        });
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        add("semantic.parallel", "chars", large.length(), () -> {
+            Diagnostics diagnostics = new Diagnostics(new StringWriter());
+            new ParallelAnalyzer(pool).analyze((ExpList) program, diagnostics);
+            return diagnostics.getErrorCount();
+        });
+
+        add("codegen.large", "chars", large.length(), () -> {
+            CodeGenerator generator = new CodeGenerator();
+            generator.generate(program, "bench.tm");
+            return generator.getCodeSize();
+        });
+
+        // The interpreter against a tree walker looking every name up in maps
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        for (String[] workload : INTERPRETER_WORKLOADS) {
+            Absyn tree = parse(workload[1]);
+            tree.accept(new SemanticAnalyzer(false, new Diagnostics(new StringWriter())), 0);
+            Interpreter interpreter = new Interpreter();
+            OutputSum output = new OutputSum();
+            interpreter.setOutput(output);
+            add("interpret." + workload[0] + ".slots", "runs", 1, () -> {
+                output.sum = 0;
+                if (interpreter.run(tree) != Interpreter.HALTED) {
+                    throw new IllegalStateException("Interpreter stopped: " + interpreter.getError());
+                }
+                return output.sum;
+            });
+            add("interpret." + workload[0] + ".maps", "runs", 1, () -> new MapEvaluator().run(tree));
+        }
+
+        add("main.end-to-end", "chars", large.length(), () -> {
+            PrintStream savedOut = System.out;
+            PrintStream savedErr = System.err;
+            System.setOut(discard);
+            System.setErr(discard);
+            try {
+                return Main.compile(new String[] { source.getPath() }, null, null);
+            } finally {
+                System.setOut(savedOut);
+                System.setErr(savedErr);
+            }
+        });
+    }
+
+    // Selection sort and Euclid's algorithm, as in sort.cm and gcd.cm, on
+    // larger inputs made up by the programs themselves
+    private final static String[][] INTERPRETER_WORKLOADS = {
+        { "sort",
+          "int x[300];\n"
+          + "int minloc(int a[], int low, int high) {\n"
+          + "  int i; int m; int k;\n"
+          + "  k = low; m = a[low]; i = low + 1;\n"
+          + "  while (i < high) { if (a[i] < m) { m = a[i]; k = i; } i = i + 1; }\n"
+          + "  return k;\n"
+          + "}\n"
+          + "void sort(int a[], int low, int high) {\n"
+          + "  int i; int k;\n"
+          + "  i = low;\n"
+          + "  while (i < high - 1) {\n"
+          + "    int t;\n"
+          + "    k = minloc(a, i, high); t = a[k]; a[k] = a[i]; a[i] = t; i = i + 1;\n"
+          + "  }\n"
+          + "}\n"
+          + "void main(void) {\n"
+          + "  int i; int seed;\n"
+          + "  i = 0; seed = 17;\n"
+          + "  while (i < 300) {\n"
+          + "    seed = seed * 1103 + 12345; seed = seed - seed / 65536 * 65536;\n"
+          + "    x[i] = seed; i = i + 1;\n"
+          + "  }\n"
+          + "  sort(x, 0, 300);\n"
+          + "  output(x[0]); output(x[299]);\n"
+          + "}\n" },
+        { "gcd",
+          "int gcd(int u, int v) {\n"
+          + "  if (v == 0) return u;\n"
+          + "  else return gcd(v, u - u/v*v);\n"
+          + "}\n"
+          + "void main(void) {\n"
+          + "  int i; int sum;\n"
+          + "  i = 1; sum = 0;\n"
+          + "  while (i <= 5000) { sum = sum + gcd(i * 7919, 104729 - i); i = i + 1; }\n"
+          + "  output(sum);\n"
+          + "}\n" },
+    };
+
+    /* The naive evaluation the interpreter's resolution pass avoids: every
+       variable is looked up by name through the scopes of the running call
+       and then the globals, every call looks its function up by name, and
+       ints live boxed in the maps. Returns the sum of the values output. */
+    private static class MapEvaluator {
+        private HashMap<String, FunctionDec> functions = new HashMap<>();
+        private HashMap<String, Object> globals = new HashMap<>();
+        private ArrayList<HashMap<String, Object>> scopes;
+        private boolean returning;
+        private long outputs;
+
+        long run(Absyn program) {
+            for (ExpList decs = (ExpList) program; decs != null; decs = decs.tail) {
+                if (decs.head instanceof FunctionDec) {
+                    FunctionDec function = (FunctionDec) decs.head;
+                    if (function.body != null) {
+                        functions.put(function.name(), function);
+                    }
+                } else if (decs.head instanceof VarDeclExp) {
+                    declare(globals, (VarDeclExp) decs.head);
+                }
+            }
+            call(functions.get("main"), null);
+            return outputs;
+        }
+
+        private void declare(HashMap<String, Object> scope, VarDeclExp dec) {
+            scope.put(dec.name(), dec.size > 0 ? new int[dec.size] : (Object) 0);
+        }
+
+        private int call(FunctionDec function, ExpList args) {
+            HashMap<String, Object> frame = new HashMap<>();
+            VarDecList params = function.params;
+            for (; args != null; args = args.tail, params = params.tail) {
+                Exp arg = args.head;
+                frame.put(params.head.name(), arg instanceof SimpleVar ? lookup(((SimpleVar) arg).name()) : eval(arg));
+            }
+            ArrayList<HashMap<String, Object>> saved = scopes;
+            scopes = new ArrayList<>();
+            scopes.add(frame);
+            int result = exec(function.body);
+            returning = false;
+            scopes = saved;
+            return result;
+        }
+
+        private HashMap<String, Object> scopeOf(String name) {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                if (scopes.get(i).containsKey(name)) {
+                    return scopes.get(i);
+                }
+            }
+            return globals;
+        }
+
+        private Object lookup(String name) {
+            return scopeOf(name).get(name);
+        }
+
+        // Runs a statement; the result is the value returned, if any
+        private int exec(Exp exp) {
+            if (exp instanceof CompoundExp) {
+                CompoundExp block = (CompoundExp) exp;
+                HashMap<String, Object> scope = new HashMap<>();
+                for (VarDecList decs = block.decs; decs != null; decs = decs.tail) {
+                    declare(scope, decs.head);
+                }
+                scopes.add(scope);
+                int result = execAll(block.exps);
+                scopes.remove(scopes.size() - 1);
+                return result;
+            } else if (exp instanceof IfExp) {
+                IfExp ifExp = (IfExp) exp;
+                return eval(ifExp.test) != 0 ? execAll(ifExp.thenpart) : execAll(ifExp.elsepart);
+            } else if (exp instanceof WhileExp) {
+                WhileExp whileExp = (WhileExp) exp;
+                int result = 0;
+                while (!returning && eval(whileExp.test) != 0) {
+                    result = exec(whileExp.body);
+                }
+                return result;
+            } else if (exp instanceof ReturnExp) {
+                ReturnExp returnExp = (ReturnExp) exp;
+                int result = returnExp.exp != null ? eval(returnExp.exp) : 0;
+                returning = true;
+                return result;
+            }
+            return eval(exp);
+        }
+
+        private int execAll(ExpList exps) {
+            int result = 0;
+            for (; exps != null && !returning; exps = exps.tail) {
+                result = exec(exps.head);
+            }
+            return result;
+        }
+
+        private int eval(Exp exp) {
+            if (exp instanceof IntExp) {
+                return ((IntExp) exp).value;
+            } else if (exp instanceof BoolExp) {
+                return ((BoolExp) exp).bool ? 1 : 0;
+            } else if (exp instanceof SimpleVar) {
+                return (Integer) lookup(((SimpleVar) exp).name());
+            } else if (exp instanceof IndexVar) {
+                IndexVar var = (IndexVar) exp;
+                return ((int[]) lookup(var.name()))[eval(var.index)];
+            } else if (exp instanceof AssignExp) {
+                AssignExp assign = (AssignExp) exp;
+                int value = eval(assign.rhs);
+                if (assign.lhs instanceof IndexVar) {
+                    IndexVar var = (IndexVar) assign.lhs;
+                    ((int[]) lookup(var.name()))[eval(var.index)] = value;
+                } else {
+                    String name = ((SimpleVar) assign.lhs).name();
+                    scopeOf(name).put(name, value);
+                }
+                return value;
+            } else if (exp instanceof CallExp) {
+                CallExp call = (CallExp) exp;
+                if (call.func().equals("output")) {
+                    outputs += eval(call.args.head);
+                    return 0;
+                }
+                return call.func().equals("input") ? 0 : call(functions.get(call.func()), call.args);
+            } else if (exp instanceof OpExp) {
+                OpExp op = (OpExp) exp;
+                switch (op.op) {
+                    case OpExp.UMINUS: return -eval(op.right);
+                    case OpExp.NOT:    return eval(op.right) == 0 ? 1 : 0;
+                    case OpExp.AND:    return eval(op.left) != 0 && eval(op.right) != 0 ? 1 : 0;
+                    case OpExp.OR:     return eval(op.left) != 0 || eval(op.right) != 0 ? 1 : 0;
+                }
+                int left = eval(op.left);
+                int right = eval(op.right);
+                switch (op.op) {
+                    case OpExp.PLUS:  return left + right;
+                    case OpExp.MINUS: return left - right;
+                    case OpExp.TIMES: return left * right;
+                    case OpExp.OVER:  return left / right;
+                    case OpExp.EQ:    return left == right ? 1 : 0;
+                    case OpExp.NEQ:   return left != right ? 1 : 0;
+                    case OpExp.LT:    return left < right ? 1 : 0;
+                    case OpExp.LTE:   return left <= right ? 1 : 0;
+                    case OpExp.GT:    return left > right ? 1 : 0;
+                    case OpExp.GTE:   return left >= right ? 1 : 0;
+                }
+            }
+            return 0;
+        }
+    }
+
+    // Sums the values the interpreter outputs, as MapEvaluator returns them
+    private static class OutputSum extends PrintStream {
+        long sum;
+
+        OutputSum() {
+            super(OutputStream.nullOutputStream());
+        }
+
+        @Override
+        public void println(int value) {
+            sum += value;
+        }
+    }
+
+    private final static String[] NAMES = new String[64];
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAMES[i] = "v" + i;
+        }
+    }
+
+    // A table with depth nested scopes, each declaring its share of NAMES
+    private static SymbolTable scopes(int depth) {
+        SymbolTable table = new SymbolTable();
+        for (int i = 0; i < NAMES.length; i++) {
+            if (i > 0 && i % Math.max(1, NAMES.length / depth) == 0) {
+                table.enterScope();
+            }
+            table.addSymbol(NAMES[i], new SymbolInfo(NAMES[i], TypeExp.INT, false));
+        }
+        return table;
+    }
+
+    private static Absyn parse(String source) throws Exception {
+        parser p = new parser(new Lexer(new StringReader(source)));
+        p.diagnostics = new Diagnostics(new StringWriter());
+        return (Absyn) p.parse().value;
+    }
+
+    private static long countTokens(String source) throws IOException {
+        return countTokens(new Lexer(new StringReader(source)));
+    }
+
+    private static long countTokens(Lexer lexer) throws IOException {
+        long n = 0;
+        while (lexer.next_token() != null) {
+            n++;
+        }
+        return n;
+    }
+
+    private void add(String name, String unit, long units, Case body) {
+        benchmarks.add(new Benchmark(name, unit, units, body));
+    }
+
+    /* Parses programs of SCALING_SIZES declarations and checks that the
+       time per declaration stays within SCALING_LIMIT of the smallest
+       program's, as it does when building every list is linear. Each
+       size is timed as the best of the rounds. Returns false on failure. */
+    private boolean scaling(PrintStream out) throws Exception {
+        double[] perDeclaration = new double[SCALING_SIZES.length];
+        for (int i = 0; i < SCALING_SIZES.length; i++) {
+            int count = SCALING_SIZES[i];
+            String program = ProgramGenerator.declarations(count);
+            Case parse = () -> parse(program).hashCode();
+            if (i == 0) {
+                runFor(parse, warmupMillis);
+            }
+            double best = Double.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                best = Math.min(best, runFor(parse, roundMillis));
+            }
+            perDeclaration[i] = best / count;
+            out.printf("%-28s %12.3f ms/op  %9d declarations  %8.1f ns/declaration%n",
+                       "parse.scaling." + count, best / 1e6, count, perDeclaration[i]);
+        }
+        double ratio = perDeclaration[perDeclaration.length - 1] / perDeclaration[0];
+        boolean linear = ratio <= SCALING_LIMIT;
+        out.printf("parse.scaling: %.2fx the time per declaration at %d declarations as at %d (limit %.1fx): %s%n",
+                   ratio, SCALING_SIZES[SCALING_SIZES.length - 1], SCALING_SIZES[0], SCALING_LIMIT,
+                   linear ? "ok" : "FAILED");
+        return linear;
+    }
+
+    /* ----------------------------- Measuring ----------------------------- */
+
+    private void measure(Benchmark b, PrintStream out) throws Exception {
+        runFor(b.body, warmupMillis);
+        double[] nanosPerOp = new double[rounds];
+        long allocated = CompileStats.allocatedBytes();
+        long ops = 0;
+        for (int r = 0; r < rounds; r++) {
+            nanosPerOp[r] = runFor(b.body, roundMillis);
+            ops += lastOps;
+        }
+        allocated = allocated < 0 ? -1 : CompileStats.allocatedBytes() - allocated;
+        double mean = 0;
+        for (double t : nanosPerOp) {
+            mean += t / rounds;
+        }
+        double variance = 0;
+        for (double t : nanosPerOp) {
+            variance += (t - mean) * (t - mean) / Math.max(1, rounds - 1);
+        }
+        out.printf("%-28s %12.3f ms/op  +- %7.3f   %14.0f %s/s  %12s KB/op%n", b.name, mean / 1e6,
+                   Math.sqrt(variance) / 1e6, b.units / (mean / 1e9), b.unit,
+                   allocated < 0 ? "-" : String.format("%.1f", allocated / 1024.0 / ops));
+    }
+
+    // Repeats the case for at least the given time; returns nanoseconds per operation
+    private double runFor(Case body, long millis) throws Exception {
+        long limit = millis * 1000000L;
+        long start = System.nanoTime();
+        long elapsed;
+        long ops = 0;
+        do {
+            checksum += body.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < limit);
+        lastOps = ops;
+        return (double) elapsed / ops;
+    }
+
+    public static void main(String argv[]) throws Exception {
+        Benchmarks bench = new Benchmarks();
+        int size = 1 << 20;
+        HashSet<String> selected = new HashSet<>();
+        for (int i = 0; i < argv.length; i++) {
+            if (argv[i].equals("-quick")) {
+                bench.warmupMillis = 300;
+                bench.roundMillis = 200;
+                bench.rounds = 3;
+            } else if (argv[i].equals("-size") && i + 1 < argv.length) {
+                size = Integer.parseInt(argv[++i]);
+            } else {
+                selected.add(argv[i]);
+            }
+        }
+
+        bench.define(size);
+        System.out.println("Workload: " + size + " characters, " + bench.rounds + " rounds of "
+                           + bench.roundMillis + " ms after " + bench.warmupMillis + " ms warmup");
+        for (Benchmark b : bench.benchmarks) {
+            if (selected.isEmpty() || selected.stream().anyMatch(b.name::startsWith)) {
+                bench.measure(b, System.out);
+            }
+        }
+        boolean passed = true;
+        if (selected.isEmpty() || selected.stream().anyMatch("parse.scaling"::startsWith)) {
+            passed = bench.scaling(System.out);
+        }
+        System.out.println("Checksum: " + bench.checksum);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
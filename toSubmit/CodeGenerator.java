@@ -0,0 +1,707 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: CodeGenerator.java
+*/
+
+import absyn.*;
+import java.io.*;
+import java.util.*;
+
+/* Generates TM assembly from an analyzed syntax tree. The tree must come
+   from a SemanticAnalyzer run without errors, since variable storage and
+   call targets are taken from the SymbolInfo bindings it left on the
+   nodes.
+
+   For expressions the level argument of visit is the register that must
+   receive the value. Registers 0-3 hold expression values and a subtree
+   may use every register from its target upwards; register 4 is a scratch
+   register only used inside a single operation. Because calls clobber all
+   registers, a subtree containing a call is only evaluated when no lower
+   register is live, and values that must survive a call are spilled to
+   the frame. Statements are visited with level 0.
+
+   A program without main, or calling a function that is only declared
+   by a prototype, is reported to the diagnostics and gets no code. */
+public class CodeGenerator implements AbsynVisitor {
+    // TM opcodes
+    public final static int HALT = 0;
+    public final static int IN   = 1;
+    public final static int OUT  = 2;
+    public final static int ADD  = 3;
+    public final static int SUB  = 4;
+    public final static int MUL  = 5;
+    public final static int DIV  = 6;
+    public final static int LD   = 7;
+    public final static int LDA  = 8;
+    public final static int LDC  = 9;
+    public final static int ST   = 10;
+    public final static int JLT  = 11;
+    public final static int JLE  = 12;
+    public final static int JGT  = 13;
+    public final static int JGE  = 14;
+    public final static int JEQ  = 15;
+    public final static int JNE  = 16;
+
+    public final static String[] OPNAMES = {
+        "HALT", "IN", "OUT", "ADD", "SUB", "MUL", "DIV",
+        "LD", "LDA", "LDC", "ST",
+        "JLT", "JLE", "JGT", "JGE", "JEQ", "JNE"
+    };
+
+    // Special registers
+    public final static int FP = 5;
+    public final static int GP = 6;
+    public final static int PC = 7;
+
+    private final static int LAST_VALUE_REG = 3;
+    private final static int SCRATCH = 4;
+
+    // Frame layout relative to fp
+    public final static int OFP_OFFSET   = 0;
+    public final static int RET_OFFSET   = -1;
+    public final static int PARAM_OFFSET = -2;
+
+    // Entry points of the built-in input and output routines
+    public final static int INPUT_ADDR  = 4;
+    public final static int OUTPUT_ADDR = 7;
+    private final static int INPUT = Names.id("input");
+
+    // Emitted instructions, indexed by code location
+    private int[] op, r, d, s;
+    private int emitLoc;
+
+    // Source row/col and function index each instruction was generated for
+    private int[] rowOf, colOf, functionOf;
+    private ArrayList<String> functionNames;
+    private int curRow = -1, curCol = -1, curFunction = -1;
+
+    // Listing lines in emission order; lineOf maps a location to its line
+    private ArrayList<String> lines;
+    private int[] lineOf;
+
+    private int globalOffset;
+    private int frameOffset;
+    private boolean inFunction;
+
+    private SymbolInfo mainInfo;
+    private IdentityHashMap<SymbolInfo, ArrayList<Integer>> pendingCalls;
+    private IdentityHashMap<Exp, Boolean> callCache;
+    private Diagnostics diagnostics;
+
+    public CodeGenerator() {
+        this(new Diagnostics());
+    }
+
+    public CodeGenerator(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        op = new int[256];
+        r = new int[256];
+        d = new int[256];
+        s = new int[256];
+        lineOf = new int[256];
+        rowOf = new int[256];
+        colOf = new int[256];
+        functionOf = new int[256];
+        functionNames = new ArrayList<>();
+        lines = new ArrayList<>();
+        pendingCalls = new IdentityHashMap<>();
+        callCache = new IdentityHashMap<>();
+    }
+
+    // Generates the whole program. Returns false, after reporting why, if
+    // there is no main function or a called function has no body.
+    public boolean generate(Absyn tree, String filename) {
+        emitComment("C-Minus Compilation to TM Code");
+        emitComment("File: " + filename);
+        emitComment("Standard prelude:");
+        emitRM(LD, GP, 0, 0, "load gp with maxaddress");
+        emitRM(LDA, FP, 0, GP, "copy gp to fp");
+        emitRM(ST, 0, 0, 0, "clear location 0");
+        int jumpAroundIO = emitSkip();
+        emitComment("Code for input routine");
+        curFunction = addFunctionName("input");
+        emitRM(ST, 0, RET_OFFSET, FP, "store return");
+        emitRO(IN, 0, 0, 0, "input");
+        emitRM(LD, PC, RET_OFFSET, FP, "return to caller");
+        emitComment("Code for output routine");
+        curFunction = addFunctionName("output");
+        emitRM(ST, 0, RET_OFFSET, FP, "store return");
+        emitRM(LD, 0, PARAM_OFFSET, FP, "load output value");
+        emitRO(OUT, 0, 0, 0, "output");
+        emitRM(LD, PC, RET_OFFSET, FP, "return to caller");
+        curFunction = -1;
+        emitJumpAt(jumpAroundIO, emitLoc, "jump around i/o code");
+        emitComment("End of standard prelude.");
+
+        globalOffset = 0;
+        if (tree != null) {
+            tree.accept(this, 0);
+        }
+
+        if (!pendingCalls.isEmpty()) {
+            reportUndefined();
+            return false;
+        }
+        if (mainInfo == null || mainInfo.address < 0) {
+            diagnostics.error(Diagnostics.CODEGEN, "missing-main", -1, -1, "No main function found");
+            return false;
+        }
+        emitComment("Finale");
+        emitRM(ST, FP, globalOffset + OFP_OFFSET, FP, "push ofp");
+        emitRM(LDA, FP, globalOffset, FP, "push frame");
+        emitRM(LDA, 0, 1, PC, "load ac with ret ptr");
+        emitJump(mainInfo.address, "jump to main loc");
+        emitRM(LD, FP, OFP_OFFSET, FP, "pop frame");
+        emitRO(HALT, 0, 0, 0, "");
+        emitComment("End of execution.");
+        return true;
+    }
+
+    // Reports the functions still waiting for a body to jump to, in the
+    // order of their first calls
+    private void reportUndefined() {
+        ArrayList<SymbolInfo> undefined = new ArrayList<>(pendingCalls.keySet());
+        undefined.sort(Comparator.comparingInt(info -> pendingCalls.get(info).get(0)));
+        for (SymbolInfo info : undefined) {
+            int loc = pendingCalls.get(info).get(0);
+            diagnostics.error(Diagnostics.CODEGEN, "undefined-function", rowOf[loc], colOf[loc],
+                              "Function '{0}' is declared but never defined", info.name);
+        }
+    }
+
+    // Writes the TM listing
+    public void write(Writer out) throws IOException {
+        BufferedWriter w = new BufferedWriter(out);
+        for (String line : lines) {
+            w.write(line);
+            w.newLine();
+        }
+        w.flush();
+    }
+
+    // Accessors for running the code in process
+    public int getCodeSize() { return emitLoc; }
+    public int[] getOps() { return op; }
+    public int[] getR() { return r; }
+    public int[] getD() { return d; }
+    public int[] getS() { return s; }
+
+    // Source map for profiling: 0-based row/col per instruction (-1 if none)
+    // and the index into getFunctionNames() of the enclosing function
+    public int[] getRows() { return rowOf; }
+    public int[] getCols() { return colOf; }
+    public int[] getFunctionOf() { return functionOf; }
+    public String[] getFunctionNames() { return functionNames.toArray(new String[0]); }
+
+    /* ----------------------------- Emitting ------------------------------ */
+
+    private void emitComment(String comment) {
+        lines.add("* " + comment);
+    }
+
+    private void emitRO(int opcode, int rr, int ss, int tt, String comment) {
+        emitAt(reserve(), opcode, rr, ss, tt, comment);
+    }
+
+    private void emitRM(int opcode, int rr, int dd, int ss, String comment) {
+        emitAt(reserve(), opcode, rr, dd, ss, comment);
+    }
+
+    // Emits a relative jump to an absolute location
+    private void emitJump(int target, String comment) {
+        emitJumpAt(reserve(), target, comment);
+    }
+
+    private void emitJumpAt(int loc, int target, String comment) {
+        emitAt(loc, LDA, PC, target - (loc + 1), PC, comment);
+    }
+
+    // Emits a conditional jump at a reserved location
+    private void emitBranchAt(int loc, int opcode, int reg, int target, String comment) {
+        emitAt(loc, opcode, reg, target - (loc + 1), PC, comment);
+    }
+
+    // Reserves one location to be filled in later
+    private int emitSkip() {
+        return reserve();
+    }
+
+    private int reserve() {
+        if (emitLoc == op.length) {
+            int capacity = emitLoc * 2;
+            op = Arrays.copyOf(op, capacity);
+            r = Arrays.copyOf(r, capacity);
+            d = Arrays.copyOf(d, capacity);
+            s = Arrays.copyOf(s, capacity);
+            lineOf = Arrays.copyOf(lineOf, capacity);
+            rowOf = Arrays.copyOf(rowOf, capacity);
+            colOf = Arrays.copyOf(colOf, capacity);
+            functionOf = Arrays.copyOf(functionOf, capacity);
+        }
+        lineOf[emitLoc] = lines.size();
+        rowOf[emitLoc] = curRow;
+        colOf[emitLoc] = curCol;
+        functionOf[emitLoc] = curFunction;
+        lines.add("");
+        return emitLoc++;
+    }
+
+    private void emitAt(int loc, int opcode, int rr, int dd, int ss, String comment) {
+        op[loc] = opcode;
+        r[loc] = rr;
+        d[loc] = dd;
+        s[loc] = ss;
+        StringBuilder line = new StringBuilder();
+        String label = Integer.toString(loc);
+        for (int i = label.length(); i < 3; i++) {
+            line.append(' ');
+        }
+        line.append(label).append(":  ");
+        String name = OPNAMES[opcode];
+        for (int i = name.length(); i < 5; i++) {
+            line.append(' ');
+        }
+        line.append(name).append("  ").append(rr).append(',').append(dd);
+        if (opcode <= DIV) {
+            line.append(',').append(ss);
+        } else {
+            line.append('(').append(ss).append(')');
+        }
+        line.append(" \t").append(comment);
+        lines.set(lineOf[loc], line.toString());
+    }
+
+    private int addFunctionName(String name) {
+        functionNames.add(name);
+        return functionNames.size() - 1;
+    }
+
+    // Attributes the following instructions to node; returns the previous position
+    private long at(Absyn node) {
+        long saved = ((long) curRow << 32) | (curCol & 0xffffffffL);
+        curRow = node.row;
+        curCol = node.col;
+        return saved;
+    }
+
+    private void restore(long saved) {
+        curRow = (int) (saved >> 32);
+        curCol = (int) saved;
+    }
+
+    /* --------------------------- Declarations ---------------------------- */
+
+    public void visit(ExpList expList, int level) {
+        while (expList != null) {
+            expList.head.accept(this, 0);
+            expList = expList.tail;
+        }
+    }
+
+    public void visit(VarDecList list, int level) {
+        while (list != null) {
+            list.head.accept(this, level);
+            list = list.tail;
+        }
+    }
+
+    // Reserves storage for a global or local variable; arrays keep element 0
+    // at the lowest address
+    public void visit(VarDeclExp exp, int level) {
+        SymbolInfo info = (SymbolInfo) exp.binding;
+        int size = exp.size > 0 ? exp.size : 1;
+        if (inFunction) {
+            frameOffset -= size;
+            info.nestLevel = 1;
+            info.offset = frameOffset + 1;
+        } else {
+            globalOffset -= size;
+            info.nestLevel = 0;
+            info.offset = globalOffset + 1;
+            emitComment("allocating global var: " + exp.name());
+        }
+    }
+
+    public void visit(FunctionDec exp, int level) {
+        SymbolInfo info = (SymbolInfo) exp.binding;
+        if (exp.body == null) {
+            return;
+        }
+        if (exp.name().equals("main")) {
+            mainInfo = info;
+        }
+
+        emitComment("processing function: " + exp.name());
+        int jumpAround = emitSkip();
+        inFunction = true;
+        curFunction = addFunctionName(exp.name());
+        long saved = at(exp);
+        info.address = emitLoc;
+        emitRM(ST, 0, RET_OFFSET, FP, "store return");
+
+        frameOffset = PARAM_OFFSET;
+        for (VarDecList params = exp.params; params != null; params = params.tail) {
+            SymbolInfo param = (SymbolInfo) params.head.binding;
+            param.nestLevel = 1;
+            param.offset = frameOffset--;
+            param.isParameter = true;
+        }
+
+        exp.body.accept(this, 0);
+        emitRM(LD, PC, RET_OFFSET, FP, "return to caller");
+        inFunction = false;
+        curFunction = -1;
+        restore(saved);
+        emitJumpAt(jumpAround, emitLoc, "jump around function body");
+
+        // Calls made before the body was generated jump here now
+        ArrayList<Integer> pending = pendingCalls.remove(info);
+        if (pending != null) {
+            for (int loc : pending) {
+                emitJumpAt(loc, info.address, "call " + exp.name());
+            }
+        }
+    }
+
+    public void visit(TypeExp exp, int level) {
+    }
+
+    /* ---------------------------- Statements ----------------------------- */
+
+    public void visit(CompoundExp exp, int level) {
+        int savedOffset = frameOffset;
+        if (exp.decs != null) {
+            exp.decs.accept(this, 0);
+        }
+        if (exp.exps != null) {
+            exp.exps.accept(this, 0);
+        }
+        frameOffset = savedOffset;
+    }
+
+    public void visit(IfExp exp, int level) {
+        long saved = at(exp);
+        emitComment("-> if");
+        int[] test = genTest(exp.test);
+        exp.thenpart.accept(this, 0);
+        if (exp.elsepart != null) {
+            int jumpToEnd = emitSkip();
+            patchTest(test, emitLoc);
+            exp.elsepart.accept(this, 0);
+            emitJumpAt(jumpToEnd, emitLoc, "jump to end of if");
+        } else {
+            patchTest(test, emitLoc);
+        }
+        emitComment("<- if");
+        restore(saved);
+    }
+
+    public void visit(WhileExp exp, int level) {
+        long saved = at(exp);
+        emitComment("-> while");
+        int top = emitLoc;
+        int[] test = genTest(exp.test);
+        exp.body.accept(this, 0);
+        restore(at(exp));
+        emitJump(top, "jump back to while test");
+        patchTest(test, emitLoc);
+        emitComment("<- while");
+        restore(saved);
+    }
+
+    public void visit(ReturnExp exp, int level) {
+        long saved = at(exp);
+        if (exp.exp != null) {
+            exp.exp.accept(this, 0);
+        }
+        emitRM(LD, PC, RET_OFFSET, FP, "return to caller");
+        restore(saved);
+    }
+
+    public void visit(NilExp exp, int level) {
+    }
+
+    /* Evaluates a branch condition and reserves the jump taken when it is
+       false. A comparison jumps on the sign of its difference directly
+       instead of first producing 0 or 1. Returns {location, opcode}. */
+    private int[] genTest(Exp test) {
+        if (test instanceof OpExp && isComparison(((OpExp) test).op)) {
+            OpExp cmp = (OpExp) test;
+            genBinary(cmp.left, SUB, cmp.right, 0);
+            return new int[] { emitSkip(), inverseJump(cmp.op) };
+        }
+        test.accept(this, 0);
+        return new int[] { emitSkip(), JEQ };
+    }
+
+    private void patchTest(int[] test, int target) {
+        emitBranchAt(test[0], test[1], 0, target, "jump if condition is false");
+    }
+
+    /* ---------------------------- Expressions ---------------------------- */
+
+    public void visit(IntExp exp, int level) {
+        emitRM(LDC, level, exp.value, 0, "load const");
+    }
+
+    public void visit(BoolExp exp, int level) {
+        emitRM(LDC, level, exp.bool ? 1 : 0, 0, "load bool");
+    }
+
+    public void visit(SimpleVar var, int level) {
+        SymbolInfo info = (SymbolInfo) var.binding;
+        if (info.isArray && !info.isParameter) {
+            emitRM(LDA, level, info.offset, baseReg(info), "load address of " + var.name());
+        } else {
+            emitRM(LD, level, info.offset, baseReg(info), "load " + var.name());
+        }
+    }
+
+    public void visit(IndexVar var, int level) {
+        SymbolInfo info = (SymbolInfo) var.binding;
+        if (var.index instanceof IntExp && !info.isParameter) {
+            emitRM(LD, level, info.offset + ((IntExp) var.index).value, baseReg(info), "load " + var.name() + "[const]");
+            return;
+        }
+        var.index.accept(this, level);
+        genElementAddress(info, level);
+        emitRM(LD, level, 0, level, "load " + var.name() + "[]");
+    }
+
+    // Turns the index held in reg into the address of the element
+    private void genElementAddress(SymbolInfo info, int reg) {
+        if (info.isParameter) {
+            emitRM(LD, SCRATCH, info.offset, FP, "load array address");
+            emitRO(ADD, reg, reg, SCRATCH, "add index");
+        } else {
+            emitRO(ADD, reg, reg, baseReg(info), "add index");
+            emitRM(LDA, reg, info.offset, reg, "element address");
+        }
+    }
+
+    public void visit(AssignExp exp, int level) {
+        long saved = at(exp);
+        genAssign(exp, level);
+        restore(saved);
+    }
+
+    private void genAssign(AssignExp exp, int level) {
+        if (exp.lhs instanceof SimpleVar) {
+            SymbolInfo info = (SymbolInfo) exp.lhs.binding;
+            exp.rhs.accept(this, level);
+            emitRM(ST, level, info.offset, baseReg(info), "assign " + ((SimpleVar) exp.lhs).name());
+            return;
+        }
+
+        IndexVar var = (IndexVar) exp.lhs;
+        SymbolInfo info = (SymbolInfo) var.binding;
+        if (var.index instanceof IntExp && !info.isParameter) {
+            exp.rhs.accept(this, level);
+            emitRM(ST, level, info.offset + ((IntExp) var.index).value, baseReg(info), "assign " + var.name() + "[const]");
+        } else if (level < LAST_VALUE_REG && !containsCall(exp.rhs) && !containsCall(var.index)) {
+            exp.rhs.accept(this, level);
+            var.index.accept(this, level + 1);
+            genElementAddress(info, level + 1);
+            emitRM(ST, level, 0, level + 1, "assign " + var.name() + "[]");
+        } else {
+            var.index.accept(this, level);
+            genElementAddress(info, level);
+            int tmp = frameOffset--;
+            emitRM(ST, level, tmp, FP, "spill element address");
+            exp.rhs.accept(this, level);
+            emitRM(LD, SCRATCH, tmp, FP, "reload element address");
+            emitRM(ST, level, 0, SCRATCH, "assign " + var.name() + "[]");
+            frameOffset++;
+        }
+    }
+
+    public void visit(OpExp exp, int level) {
+        switch (exp.op) {
+            case OpExp.UMINUS:
+                if (exp.right instanceof IntExp) {
+                    emitRM(LDC, level, -((IntExp) exp.right).value, 0, "load const");
+                } else {
+                    exp.right.accept(this, level);
+                    emitRM(LDC, SCRATCH, 0, 0, "load 0");
+                    emitRO(SUB, level, SCRATCH, level, "negate");
+                }
+                break;
+            case OpExp.NOT:
+                exp.right.accept(this, level);
+                genFlag(JEQ, level, "not");
+                break;
+            case OpExp.AND:
+            case OpExp.OR: {
+                // Short circuit: the left value is the result if it decides it
+                exp.left.accept(this, level);
+                int skip = emitSkip();
+                exp.right.accept(this, level);
+                emitBranchAt(skip, exp.op == OpExp.AND ? JEQ : JNE, level, emitLoc, "short circuit");
+                break;
+            }
+            case OpExp.PLUS:
+                genBinary(exp.left, ADD, exp.right, level);
+                break;
+            case OpExp.MINUS:
+                genBinary(exp.left, SUB, exp.right, level);
+                break;
+            case OpExp.TIMES:
+                genBinary(exp.left, MUL, exp.right, level);
+                break;
+            case OpExp.OVER:
+                genBinary(exp.left, DIV, exp.right, level);
+                break;
+            default:
+                genBinary(exp.left, SUB, exp.right, level);
+                genFlag(trueJump(exp.op), level, "compare");
+                break;
+        }
+    }
+
+    /* Leaves left <opcode> right in reg. Constant right operands are loaded
+       with LDC (or folded into LDA for + and -), a free register holds the
+       right operand when possible, and the left value is only spilled to
+       the frame when no register is free or the right side makes a call. */
+    private void genBinary(Exp left, int opcode, Exp right, int reg) {
+        if (right instanceof IntExp) {
+            int value = ((IntExp) right).value;
+            left.accept(this, reg);
+            if ((opcode == ADD || opcode == SUB) && value == 0) {
+                return;
+            } else if (opcode == ADD) {
+                emitRM(LDA, reg, value, reg, "add const");
+            } else if (opcode == SUB) {
+                emitRM(LDA, reg, -value, reg, "subtract const");
+            } else {
+                emitRM(LDC, SCRATCH, value, 0, "load const");
+                emitRO(opcode, reg, reg, SCRATCH, "op");
+            }
+        } else if (reg < LAST_VALUE_REG && !containsCall(right)) {
+            left.accept(this, reg);
+            right.accept(this, reg + 1);
+            emitRO(opcode, reg, reg, reg + 1, "op");
+        } else {
+            left.accept(this, reg);
+            int tmp = frameOffset--;
+            emitRM(ST, reg, tmp, FP, "spill left operand");
+            right.accept(this, reg);
+            emitRM(LD, SCRATCH, tmp, FP, "reload left operand");
+            emitRO(opcode, reg, SCRATCH, reg, "op");
+            frameOffset++;
+        }
+    }
+
+    // Replaces the value in reg by 1 if the jump condition holds on it, else 0
+    private void genFlag(int jump, int reg, String comment) {
+        emitRM(jump, reg, 2, PC, comment);
+        emitRM(LDC, reg, 0, 0, "false case");
+        emitRM(LDA, PC, 1, PC, "unconditional jump");
+        emitRM(LDC, reg, 1, 0, "true case");
+    }
+
+    public void visit(CallExp exp, int level) {
+        SymbolInfo info = (SymbolInfo) exp.binding;
+        long saved = at(exp);
+        emitComment("-> call of function: " + exp.func());
+
+        // Arguments go straight into the parameter slots of the new frame
+        int base = frameOffset;
+        int i = 0;
+        for (ExpList args = exp.args; args != null; args = args.tail) {
+            frameOffset = base + PARAM_OFFSET - i;
+            Exp arg = args.head;
+            arg.accept(this, level);
+            emitRM(ST, level, base + PARAM_OFFSET - i, FP, "store arg " + i);
+            i++;
+        }
+        frameOffset = base;
+
+        emitRM(ST, FP, base + OFP_OFFSET, FP, "push ofp");
+        emitRM(LDA, FP, base, FP, "push frame");
+        emitRM(LDA, 0, 1, PC, "load ac with ret ptr");
+        int address = info.address;
+        if (address < 0 && info.parameters == null) {
+            address = exp.funcId == INPUT ? INPUT_ADDR : OUTPUT_ADDR;
+        }
+        if (address >= 0) {
+            emitJump(address, "jump to function " + exp.func());
+        } else {
+            ArrayList<Integer> pending = pendingCalls.get(info);
+            if (pending == null) {
+                pending = new ArrayList<>();
+                pendingCalls.put(info, pending);
+            }
+            pending.add(emitSkip());
+        }
+        emitRM(LD, FP, OFP_OFFSET, FP, "pop frame");
+        if (level != 0) {
+            emitRM(LDA, level, 0, 0, "move result");
+        }
+        emitComment("<- call");
+        restore(saved);
+    }
+
+    /* ------------------------------ Helpers ------------------------------ */
+
+    private static int baseReg(SymbolInfo info) {
+        return info.nestLevel == 0 ? GP : FP;
+    }
+
+    private static boolean isComparison(int op) {
+        switch (op) {
+            case OpExp.LT: case OpExp.LTE: case OpExp.GT:
+            case OpExp.GTE: case OpExp.EQ: case OpExp.NEQ:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int trueJump(int op) {
+        switch (op) {
+            case OpExp.LT:  return JLT;
+            case OpExp.LTE: return JLE;
+            case OpExp.GT:  return JGT;
+            case OpExp.GTE: return JGE;
+            case OpExp.EQ:  return JEQ;
+            default:        return JNE;
+        }
+    }
+
+    private static int inverseJump(int op) {
+        switch (op) {
+            case OpExp.LT:  return JGE;
+            case OpExp.LTE: return JGT;
+            case OpExp.GT:  return JLE;
+            case OpExp.GTE: return JLT;
+            case OpExp.EQ:  return JNE;
+            default:        return JEQ;
+        }
+    }
+
+    // Whether evaluating the expression makes a call, memoized per node
+    private boolean containsCall(Exp exp) {
+        if (exp == null || exp instanceof IntExp || exp instanceof BoolExp
+                || exp instanceof SimpleVar || exp instanceof NilExp) {
+            return false;
+        }
+        Boolean cached = callCache.get(exp);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result;
+        if (exp instanceof CallExp) {
+            result = true;
+        } else if (exp instanceof OpExp) {
+            result = containsCall(((OpExp) exp).left) || containsCall(((OpExp) exp).right);
+        } else if (exp instanceof IndexVar) {
+            result = containsCall(((IndexVar) exp).index);
+        } else if (exp instanceof AssignExp) {
+            result = containsCall(((AssignExp) exp).lhs) || containsCall(((AssignExp) exp).rhs);
+        } else {
+            result = true;
+        }
+        callCache.put(exp, result);
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: CompileServer.java
+*/
+
+import absyn.*;
+import java.io.*;
+import java.util.HashMap;
+
+/* Keeps one warmed up compiler in memory and serves compile requests
+   read line by line from a stream, usually stdin. A request holds the
+   same arguments as a normal command line, for example
+
+       -O -c gcd.cm
+
+   and is answered with everything that run prints (diagnostics
+   included) followed by a line "END ok", "END errors" or "END usage".
+   The line "quit" stops the server. A single parser and Lexer are reset
+   and reused for every request, and requests with -incremental analyze
+   only the declarations changed since the last request for that file.
+   Options that read stdin or start other modes cannot be used from a
+   request. */
+public class CompileServer {
+    private final static String[] REJECTED = { "-run", "-sim", "-profile", "-batch", "-server", "--server" };
+
+    // Small program run through every phase at startup to load and JIT the compiler
+    private final static String WARMUP_PROGRAM =
+        "int a[10];\n" +
+        "int f(int x, int y[]) { if (x <= 1) return 1; y[x] = x * f(x - 1, y); return y[x]; }\n" +
+        "void main(void) { int i; bool b; i = 0; b = true;\n" +
+        "  while (i < 10 && b) { a[i] = f(i, a) / 2 + (3 - 1) * 0; i = i + 1; b = ~(i == 9); }\n" +
+        "  output(a[3]); }\n";
+    private final static int WARMUP_ROUNDS = 50;
+
+    private parser parser;
+    // Analysis results kept between requests with -incremental, per file
+    private HashMap<String, IncrementalAnalyzer> analyzers = new HashMap<>();
+
+    public CompileServer() {
+        parser = new parser(new Lexer(new StringReader("")));
+        parser.exitOnFatalError = false;
+    }
+
+    // Answers requests from in until "quit" or the end of the input
+    public void serve(BufferedReader in, PrintStream out) {
+        warmUp();
+        out.println("READY");
+        out.flush();
+
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("quit")) {
+                    break;
+                }
+                String[] args = line.split("\\s+");
+                int status;
+                String rejected = rejectedOption(args);
+                if (rejected != null) {
+                    out.println("Error: " + rejected + " is not available in server mode");
+                    status = Main.USAGE;
+                } else {
+                    System.setOut(out);
+                    System.setErr(out);
+                    try {
+                        status = Main.compile(args, parser, analyzers);
+                    } catch (Throwable e) {
+                        // Fails this request only, e.g. a stack overflow on a deeply nested input
+                        out.println("Error: " + e);
+                        status = Main.ERRORS;
+                    } finally {
+                        System.setOut(savedOut);
+                        System.setErr(savedErr);
+                    }
+                }
+                out.println(status == Main.OK ? "END ok" : status == Main.ERRORS ? "END errors" : "END usage");
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String rejectedOption(String[] args) {
+        for (String arg : args) {
+            for (String option : REJECTED) {
+                if (arg.equals(option)) {
+                    return option;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Runs the built-in program through every phase, discarding the results
+    private void warmUp() {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            try {
+                Diagnostics diagnostics = new Diagnostics(new StringWriter());
+                parser.reset(new StringReader(WARMUP_PROGRAM));
+                parser.diagnostics = diagnostics;
+                Absyn tree = (Absyn) parser.parse().value;
+                tree.accept(new SemanticAnalyzer(false, diagnostics), 0);
+                tree = new Optimizer().optimize(tree);
+                new CodeGenerator().generate(tree, "warmup.tm");
+            } catch (Exception e) {
+                // Warming up is only an optimization
+                return;
+            }
+        }
+    }
+}
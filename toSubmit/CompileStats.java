@@ -0,0 +1,241 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: CompileStats.java
+*/
+
+import absyn.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+/* Measurements of one compilation: wall time, CPU time and allocated
+   bytes of every phase, taken from the current thread's ThreadMXBean,
+   and the sizes of what the phases produce (tokens, AST nodes by class,
+   symbol table depth and entries). Phases are measured between start
+   and stop; a phase started again adds to its earlier totals. CPU time
+   and allocation are -1 when the JVM cannot report them. */
+public class CompileStats {
+    // Totals of one phase
+    public static class Phase {
+        public final String name;
+        public long wallNanos;
+        public long cpuNanos;
+        public long allocatedBytes;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private final static ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private LinkedHashMap<String, Phase> phases = new LinkedHashMap<>();
+    private Phase current;
+    private long startWall, startCpu, startAllocated;
+
+    private String filename;
+    private long tokens = -1;
+    private TreeMap<String, Integer> nodes;
+    private int peakScopeDepth = -1;
+    private int symbols = -1;
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    // Begins timing a phase, ending the current one
+    public void start(String phase) {
+        if (current != null) {
+            stop();
+        }
+        current = phases.computeIfAbsent(phase, Phase::new);
+        startAllocated = allocatedBytes();
+        startCpu = cpuTime();
+        startWall = System.nanoTime();
+    }
+
+    public void stop() {
+        if (current == null) {
+            return;
+        }
+        long wall = System.nanoTime() - startWall;
+        long cpu = cpuTime();
+        long allocated = allocatedBytes();
+        current.wallNanos += wall;
+        current.cpuNanos = cpu < 0 || current.cpuNanos < 0 ? -1 : current.cpuNanos + cpu - startCpu;
+        current.allocatedBytes = allocated < 0 || current.allocatedBytes < 0 ? -1
+                                 : current.allocatedBytes + allocated - startAllocated;
+        current = null;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    // Bytes allocated so far by the current thread, or -1 if unknown
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /* Reads every token of the scanner into a list, counting them, and
+       returns a scanner that hands the same tokens to the parser. This
+       lets lexing be measured apart from parsing. */
+    public Scanner lex(Scanner scanner) throws Exception {
+        ArrayList<Symbol> list = new ArrayList<>();
+        Symbol token;
+        while ((token = scanner.next_token()) != null) {
+            list.add(token);
+        }
+        tokens = list.size();
+        return new Scanner() {
+            private int next;
+
+            public Symbol next_token() {
+                return next < list.size() ? list.get(next++) : null;
+            }
+        };
+    }
+
+    // Counts the nodes of a tree by class, each list as one node
+    public void countNodes(Absyn tree) {
+        nodes = new TreeMap<>();
+        countList(tree);
+        AbsynWalker.walk(tree, new AbsynHooks() {
+            public boolean pre(Absyn node, int level) {
+                nodes.merge(node.getClass().getSimpleName(), 1, Integer::sum);
+                return true;
+            }
+
+            public int child(Absyn node, int slot, Absyn child, int level) {
+                countList(child);
+                return level + 1;
+            }
+        }, 0);
+    }
+
+    // The walker visits the elements of a list but not the list itself
+    private void countList(Absyn list) {
+        if (list instanceof ExpList || list instanceof VarDecList) {
+            nodes.merge(list.getClass().getSimpleName(), 1, Integer::sum);
+        }
+    }
+
+    public void countSymbols(SymbolTable table) {
+        countSymbols(table.getEntryCount(), table.getPeakDepth());
+    }
+
+    // For analyses spread over several tables, e.g. ParallelAnalyzer's
+    public void countSymbols(int symbols, int peakScopeDepth) {
+        this.symbols = symbols;
+        this.peakScopeDepth = peakScopeDepth;
+    }
+
+    public Collection<Phase> getPhases() {
+        return phases.values();
+    }
+
+    public Phase getPhase(String name) {
+        return phases.get(name);
+    }
+
+    // Tokens read by lex, or -1 if it was not used
+    public long getTokenCount() {
+        return tokens;
+    }
+
+    // AST node counts by class name, or null if the tree was not counted
+    public Map<String, Integer> getNodeCounts() {
+        return nodes;
+    }
+
+    public int getNodeCount() {
+        int total = 0;
+        if (nodes != null) {
+            for (int count : nodes.values()) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    // Deepest scope nesting of the symbol table, the global scope being 0
+    public int getPeakScopeDepth() {
+        return peakScopeDepth;
+    }
+
+    // Symbols declared in the symbol table, library functions included
+    public int getSymbolCount() {
+        return symbols;
+    }
+
+    /* ------------------------------ Output ------------------------------- */
+
+    public void print(PrintStream out) {
+        out.println("Compilation statistics" + (filename == null ? "" : " for " + filename) + ":");
+        out.printf("  %-12s %12s %12s %14s%n", "phase", "wall ms", "cpu ms", "allocated KB");
+        long wall = 0;
+        for (Phase phase : phases.values()) {
+            out.printf("  %-12s %12.3f %12s %14s%n", phase.name, phase.wallNanos / 1e6,
+                       phase.cpuNanos < 0 ? "-" : String.format("%.3f", phase.cpuNanos / 1e6),
+                       phase.allocatedBytes < 0 ? "-" : String.format("%.1f", phase.allocatedBytes / 1024.0));
+            wall += phase.wallNanos;
+        }
+        out.printf("  %-12s %12.3f%n", "total", wall / 1e6);
+        if (tokens >= 0) {
+            out.println("  tokens: " + tokens);
+        }
+        if (nodes != null) {
+            out.println("  AST nodes: " + getNodeCount());
+            for (Map.Entry<String, Integer> entry : nodes.entrySet()) {
+                out.printf("    %-12s %10d%n", entry.getKey(), entry.getValue());
+            }
+        }
+        if (symbols >= 0) {
+            out.println("  symbols: " + symbols + ", peak scope depth: " + peakScopeDepth);
+        }
+        out.flush();
+    }
+
+    // Writes the statistics as one JSON object on one line
+    public void printJson(PrintStream out) {
+        StringBuilder s = new StringBuilder("{\"stats\":{");
+        if (filename != null) {
+            s.append("\"file\":\"");
+            Diagnostics.appendEscaped(filename, s);
+            s.append("\",");
+        }
+        s.append("\"phases\":[");
+        boolean first = true;
+        for (Phase phase : phases.values()) {
+            s.append(first ? "" : ",");
+            s.append("{\"name\":\"").append(phase.name);
+            s.append("\",\"wallNanos\":").append(phase.wallNanos);
+            s.append(",\"cpuNanos\":").append(phase.cpuNanos);
+            s.append(",\"allocatedBytes\":").append(phase.allocatedBytes).append('}');
+            first = false;
+        }
+        s.append("],\"tokens\":").append(tokens);
+        s.append(",\"nodes\":").append(getNodeCount());
+        s.append(",\"nodesByClass\":{");
+        if (nodes != null) {
+            first = true;
+            for (Map.Entry<String, Integer> entry : nodes.entrySet()) {
+                s.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+                first = false;
+            }
+        }
+        s.append("},\"symbols\":").append(symbols);
+        s.append(",\"peakScopeDepth\":").append(peakScopeDepth).append("}}");
+        out.println(s);
+        out.flush();
+    }
+}
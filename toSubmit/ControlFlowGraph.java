@@ -0,0 +1,272 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: ControlFlowGraph.java
+*/
+
+import absyn.*;
+import java.util.Arrays;
+
+/* The basic blocks of a function body and the edges between them. Blocks
+   are numbered in the order they start in the source, from ENTRY; the
+   exit block comes last and holds no statements. Every return and the
+   end of the body lead to it. The statements of a block are expression
+   statements and returns, kept in order; an if or while test that ends a
+   block is kept apart as the block's test. Such a block has two
+   successors, the block run when the test holds first, unless the test
+   is a constant and one of them can never be taken.
+
+   Statements and edges are stored like FlatAst stores nodes: block b has
+   statements statementStart(b) to statementEnd(b) - 1 and successors
+   successorStart(b) to successorEnd(b) - 1 of two flat arrays. The body
+   is lowered by AbsynWalker, so it can be nested to any depth. */
+public class ControlFlowGraph implements AbsynHooks {
+    public final static int ENTRY = 0;
+
+    private final static int NONE = -1;
+    // Edge target standing for the exit block until the body is lowered
+    private final static int PENDING_EXIT = -2;
+
+    private int blocks;
+    private int exit;
+    // The block running past the end of the body, or NONE
+    private int fallThrough;
+    private Exp[] statements = new Exp[16];
+    private int statementCount;
+    private int[] statementStart = new int[8];
+    private Exp[] tests = new Exp[8];
+    private int[] successors;
+    private int[] successorStart;
+
+    // While lowering: two successor slots per block, the block statements
+    // are added to (NONE after a return), the blocks of the ifs and whiles
+    // being lowered and the test about to be walked
+    private int[] edges = new int[16];
+    private int current;
+    private int[] open = new int[16];
+    private int top;
+    private Exp test;
+
+    private ControlFlowGraph() {
+    }
+
+    public static ControlFlowGraph build(FunctionDec function) {
+        ControlFlowGraph graph = new ControlFlowGraph();
+        graph.current = graph.newBlock();
+        AbsynWalker.walk(function.body, graph, 0);
+        graph.finish();
+        return graph;
+    }
+
+    public int getBlockCount() { return blocks; }
+    public int getExit() { return exit; }
+    public int statementStart(int block) { return statementStart[block]; }
+    public int statementEnd(int block) { return statementStart[block + 1]; }
+    public Exp statement(int index) { return statements[index]; }
+    public int successorStart(int block) { return successorStart[block]; }
+    public int successorEnd(int block) { return successorStart[block + 1]; }
+    public int successor(int index) { return successors[index]; }
+
+    // Returns the test ending a block, or null.
+    public Exp test(int block) {
+        return tests[block];
+    }
+
+    // Marks the blocks some path from ENTRY runs through.
+    public boolean[] reachable() {
+        boolean[] reached = new boolean[blocks];
+        int[] work = new int[blocks];
+        int pending = 0;
+        reached[ENTRY] = true;
+        work[pending++] = ENTRY;
+        while (pending > 0) {
+            int block = work[--pending];
+            for (int i = successorStart[block]; i < successorStart[block + 1]; i++) {
+                int next = successors[i];
+                if (!reached[next]) {
+                    reached[next] = true;
+                    work[pending++] = next;
+                }
+            }
+        }
+        return reached;
+    }
+
+    // Returns true if some path runs past the last statement of the body
+    // instead of ending in a return.
+    public boolean mayFallOffEnd() {
+        return fallThrough != NONE && reachable()[fallThrough];
+    }
+
+    /* ----------------------------- Lowering ------------------------------ */
+
+    public boolean pre(Absyn node, int level) {
+        if (node instanceof CompoundExp || node instanceof IfExp || node instanceof WhileExp) {
+            return true;
+        }
+        if (node == test || node instanceof VarDeclExp || node instanceof NilExp) {
+            return false;
+        }
+        add((Exp) node);
+        if (node instanceof ReturnExp) {
+            link(current, PENDING_EXIT);
+            current = NONE;
+        }
+        return false;
+    }
+
+    public int child(Absyn node, int slot, Absyn child, int level) {
+        if (node instanceof IfExp) {
+            IfExp exp = (IfExp) node;
+            if (slot == 0) {
+                // The test ends the block it is reached in
+                int cond = ensureCurrent();
+                tests[cond] = exp.test;
+                test = exp.test;
+                push(cond);
+            } else if (slot == 1) {
+                int cond = open[top - 1];
+                current = newBlock();
+                if (constant(exp.test) != 0) {
+                    link(cond, current);
+                }
+            } else {
+                int cond = open[top - 1];
+                push(current);
+                if (exp.elsepart != null) {
+                    current = newBlock();
+                    if (constant(exp.test) != 1) {
+                        link(cond, current);
+                    }
+                }
+            }
+        } else if (node instanceof WhileExp) {
+            WhileExp exp = (WhileExp) node;
+            if (slot == 0) {
+                // The test starts a block of its own, as the loop returns to it
+                int header = newBlock();
+                link(current, header);
+                tests[header] = exp.test;
+                test = exp.test;
+                push(header);
+                current = header;
+            } else {
+                int header = open[top - 1];
+                current = newBlock();
+                if (constant(exp.test) != 0) {
+                    link(header, current);
+                }
+            }
+        }
+        return level;
+    }
+
+    public void post(Absyn node, int level) {
+        if (node instanceof IfExp) {
+            IfExp exp = (IfExp) node;
+            int thenEnd = open[--top];
+            int cond = open[--top];
+            int elseEnd = exp.elsepart != null ? current : constant(exp.test) == 1 ? NONE : cond;
+            if (thenEnd == NONE && elseEnd == NONE) {
+                current = NONE;
+            } else {
+                current = newBlock();
+                link(thenEnd, current);
+                link(elseEnd, current);
+            }
+        } else if (node instanceof WhileExp) {
+            WhileExp exp = (WhileExp) node;
+            int header = open[--top];
+            link(current, header);
+            if (constant(exp.test) == 1) {
+                current = NONE;
+            } else {
+                current = newBlock();
+                link(header, current);
+            }
+        }
+    }
+
+    // Returns 1 or 0 for a test that is always true or false, otherwise -1
+    private static int constant(Exp test) {
+        if (test instanceof BoolExp) {
+            return ((BoolExp) test).bool ? 1 : 0;
+        }
+        if (test instanceof IntExp) {
+            return ((IntExp) test).value != 0 ? 1 : 0;
+        }
+        return -1;
+    }
+
+    // Statements are only ever added to the newest block, so each block's
+    // statements start where the previous block's end
+    private int newBlock() {
+        int block = blocks++;
+        if (blocks == statementStart.length) {
+            statementStart = Arrays.copyOf(statementStart, blocks * 2);
+            tests = Arrays.copyOf(tests, blocks * 2);
+        }
+        if (blocks * 2 > edges.length) {
+            edges = Arrays.copyOf(edges, blocks * 4);
+        }
+        statementStart[block] = statementCount;
+        edges[block * 2] = NONE;
+        edges[block * 2 + 1] = NONE;
+        return block;
+    }
+
+    // Starts a block, which nothing leads to, for code following a return
+    private int ensureCurrent() {
+        if (current == NONE) {
+            current = newBlock();
+        }
+        return current;
+    }
+
+    private void add(Exp statement) {
+        ensureCurrent();
+        if (statementCount == statements.length) {
+            statements = Arrays.copyOf(statements, statementCount * 2);
+        }
+        statements[statementCount++] = statement;
+    }
+
+    private void link(int from, int to) {
+        if (from != NONE) {
+            edges[edges[from * 2] == NONE ? from * 2 : from * 2 + 1] = to;
+        }
+    }
+
+    private void push(int block) {
+        if (top == open.length) {
+            open = Arrays.copyOf(open, top * 2);
+        }
+        open[top++] = block;
+    }
+
+    // Adds the exit block and packs the successors of every block
+    private void finish() {
+        fallThrough = current;
+        link(current, PENDING_EXIT);
+        exit = newBlock();
+        statementStart[blocks] = statementCount;
+
+        successorStart = new int[blocks + 1];
+        int count = 0;
+        for (int block = 0; block < blocks; block++) {
+            count += (edges[block * 2] != NONE ? 1 : 0) + (edges[block * 2 + 1] != NONE ? 1 : 0);
+        }
+        successors = new int[count];
+        count = 0;
+        for (int block = 0; block < blocks; block++) {
+            successorStart[block] = count;
+            for (int i = block * 2; i < block * 2 + 2; i++) {
+                if (edges[i] != NONE) {
+                    successors[count++] = edges[i] == PENDING_EXIT ? exit : edges[i];
+                }
+            }
+        }
+        successorStart[blocks] = count;
+        edges = null;
+        open = null;
+    }
+}
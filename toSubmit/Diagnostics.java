@@ -0,0 +1,225 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: Diagnostics.java
+*/
+
+import java.io.*;
+import java.util.ArrayList;
+
+/* Collects the errors reported by the parser and the semantic analyzer.
+   Messages are kept as a template plus arguments and are only formatted
+   when flushed, which writes everything through one buffered writer
+   either as the usual text or as one JSON object per line. */
+public class Diagnostics {
+    public final static int ERROR = 0;
+    public final static int NOTE  = 1;
+
+    public final static String PARSE    = "parse";
+    public final static String SEMANTIC = "semantic";
+    public final static String CODEGEN  = "codegen";
+
+    private static class Diagnostic {
+        int severity;
+        String phase;
+        String code;
+        int row, col;
+        String template;
+        Object[] args;
+
+        Diagnostic(int severity, String phase, String code, int row, int col, String template, Object[] args) {
+            this.severity = severity;
+            this.phase = phase;
+            this.code = code;
+            this.row = row;
+            this.col = col;
+            this.template = template;
+            this.args = args;
+        }
+    }
+
+    private ArrayList<Diagnostic> pending;
+    // Null for stderr
+    private Writer writer;
+    // Created by the first flush, as collectors that are only replayed
+    // into another one never write
+    private PrintWriter out;
+    private boolean json;
+    private String filename;
+    private int errorLimit;
+    private int errorCount;
+    private int suppressed;
+    private boolean lastSuppressed;
+
+    public Diagnostics() {
+        this(null);
+    }
+
+    public Diagnostics(Writer writer) {
+        pending = new ArrayList<>();
+        this.writer = writer;
+        json = false;
+        errorLimit = 0;
+    }
+
+    // Selects JSON lines instead of plain text output
+    public void setJson(boolean json) {
+        this.json = json;
+    }
+
+    // Names the source file in JSON output, for runs over several files
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    // Stops recording errors after the given number, 0 means no limit
+    public void setErrorLimit(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public boolean hasErrors() {
+        return errorCount > 0;
+    }
+
+    // Reports an error at a 0-based row and column (-1 when unknown).
+    // The template refers to its arguments as {0}, {1}, ...
+    public void error(String phase, String code, int row, int col, String template, Object... args) {
+        errorCount++;
+        if (errorLimit > 0 && errorCount > errorLimit) {
+            suppressed++;
+            lastSuppressed = true;
+            return;
+        }
+        lastSuppressed = false;
+        pending.add(new Diagnostic(ERROR, phase, code, row, col, template, args));
+    }
+
+    // Adds extra information to the previous error
+    public void note(String phase, String code, String template, Object... args) {
+        if (lastSuppressed) {
+            return;
+        }
+        pending.add(new Diagnostic(NOTE, phase, code, -1, -1, template, args));
+    }
+
+    // Reports everything recorded here (and not yet flushed) again into
+    // target, moving the rows by rowShift
+    public void replay(Diagnostics target, int rowShift) {
+        for (Diagnostic d : pending) {
+            if (d.severity == ERROR) {
+                target.error(d.phase, d.code, d.row >= 0 ? d.row + rowShift : d.row, d.col, d.template, d.args);
+            } else {
+                target.note(d.phase, d.code, d.template, d.args);
+            }
+        }
+    }
+
+    // Formats and writes everything reported since the last flush
+    public void flush() {
+        if (out == null) {
+            Writer target = writer != null ? writer : new OutputStreamWriter(System.err);
+            out = new PrintWriter(new BufferedWriter(target, 1 << 16));
+        }
+        StringBuilder line = new StringBuilder();
+        for (Diagnostic d : pending) {
+            line.setLength(0);
+            if (json) {
+                formatJson(d, line);
+            } else {
+                formatText(d, line);
+            }
+            out.println(line);
+        }
+        pending.clear();
+        if (suppressed > 0) {
+            if (json) {
+                out.println("{\"severity\":\"note\",\"code\":\"error-limit\",\"suppressed\":" + suppressed + "}");
+            } else {
+                out.println("Too many errors, " + suppressed + " more not shown");
+            }
+            suppressed = 0;
+        }
+        out.flush();
+    }
+
+    private void formatText(Diagnostic d, StringBuilder s) {
+        if (d.severity == NOTE) {
+            appendMessage(d, s);
+        } else if (d.phase.equals(PARSE)) {
+            s.append("Error");
+            if (d.row >= 0) {
+                s.append(" in line ").append(d.row + 1);
+                if (d.col >= 0) {
+                    s.append(", column ").append(d.col + 1);
+                }
+            }
+            s.append(" : ");
+            appendMessage(d, s);
+        } else {
+            s.append("Error: ");
+            appendMessage(d, s);
+            if (d.row >= 0) {
+                s.append(" at line ").append(d.row + 1).append(", column ").append(d.col + 1);
+            }
+        }
+    }
+
+    private void formatJson(Diagnostic d, StringBuilder s) {
+        s.append("{\"severity\":\"").append(d.severity == ERROR ? "error" : "note");
+        if (filename != null) {
+            s.append("\",\"file\":\"");
+            appendEscaped(filename, s);
+        }
+        s.append("\",\"phase\":\"").append(d.phase);
+        s.append("\",\"code\":\"").append(d.code).append('"');
+        if (d.row >= 0) {
+            s.append(",\"line\":").append(d.row + 1);
+        }
+        if (d.col >= 0) {
+            s.append(",\"column\":").append(d.col + 1);
+        }
+        StringBuilder message = new StringBuilder();
+        appendMessage(d, message);
+        s.append(",\"message\":\"");
+        appendEscaped(message, s);
+        s.append("\"}");
+    }
+
+    // Substitutes {n} placeholders with the matching argument
+    private void appendMessage(Diagnostic d, StringBuilder s) {
+        String t = d.template;
+        int i = 0;
+        while (i < t.length()) {
+            char c = t.charAt(i);
+            if (c == '{' && i + 2 < t.length() && t.charAt(i + 2) == '}' && Character.isDigit(t.charAt(i + 1))) {
+                s.append(d.args[t.charAt(i + 1) - '0']);
+                i += 3;
+            } else {
+                s.append(c);
+                i++;
+            }
+        }
+    }
+
+    static void appendEscaped(CharSequence text, StringBuilder s) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':  s.append("\\\""); break;
+                case '\\': s.append("\\\\"); break;
+                case '\n': s.append("\\n"); break;
+                case '\r': s.append("\\r"); break;
+                case '\t': s.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        s.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        s.append(c);
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: ExpListBuilder.java
+*/
+
+import absyn.*;
+
+/* Builds an ExpList front to back while remembering the last cell, so the
+   left-recursive list rules in cm.cup can append in constant time instead
+   of walking the tail on every new element. */
+public class ExpListBuilder {
+    public ExpList head;
+    private ExpList last;
+
+    public ExpListBuilder(Exp first) {
+        head = new ExpList(first, null);
+        last = head;
+    }
+
+    public ExpListBuilder append(Exp exp) {
+        last.tail = new ExpList(exp, null);
+        last = last.tail;
+        return this;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: FlatAst.java
+*/
+
+import absyn.*;
+import java.util.Arrays;
+
+/* A compact, array-backed encoding of an abstract syntax tree. Every node
+   is an index into a set of parallel arrays, list cons cells are
+   replaced by sibling links, and identifiers are kept as their Names
+   IDs. Nodes are numbered in preorder, so passes that need every node
+   once loop over the indexes and follow the child and next links where
+   they need the shape; the dtype and binding the semantic analyzer left
+   on each node are kept too.
+
+   IncrementalAnalyzer keeps the declarations it analyzed in this form:
+   a few arrays instead of a graph of node objects, compared by value to
+   find unchanged declarations and untouched by the passes that rewrite
+   trees later on. toAbsyn rebuilds the nodes for the AbsynVisitor
+   passes, which take node objects and cannot run on the arrays. Both
+   directions use no recursion, so trees of any depth can be encoded. */
+public class FlatAst implements AbsynHooks {
+    public final static int EXPLIST    = 0;
+    public final static int ASSIGN     = 1;
+    public final static int IF         = 2;
+    public final static int INT        = 3;
+    public final static int OP         = 4;
+    public final static int TYPE       = 5;
+    public final static int VARDECL    = 6;
+    public final static int FUNCTION   = 7;
+    public final static int COMPOUND   = 8;
+    public final static int CALL       = 9;
+    public final static int WHILE      = 10;
+    public final static int RETURN     = 11;
+    public final static int VARDECLIST = 12;
+    public final static int INDEXVAR   = 13;
+    public final static int SIMPLEVAR  = 14;
+    public final static int NIL        = 15;
+    public final static int BOOL       = 16;
+
+    public final static int NONE = -1;
+
+    // Class name of each kind's absyn node
+    private final static String[] KIND_NAMES = {
+        "ExpList", "AssignExp", "IfExp", "IntExp", "OpExp", "TypeExp", "VarDeclExp", "FunctionDec",
+        "CompoundExp", "CallExp", "WhileExp", "ReturnExp", "VarDecList", "IndexVar", "SimpleVar",
+        "NilExp", "BoolExp"
+    };
+
+    public static String kindName(int kind) {
+        return KIND_NAMES[kind];
+    }
+
+    /* Per node data. For lists, child0 is the first element and the
+       elements are chained through next. The meaning of value depends on
+       the kind: operator for OP, type code for TYPE (plus ARRAY_FLAG),
+       array size for VARDECL, the literal for INT and 0/1 for BOOL. */
+    private int[] kind, row, col, value, name;
+    private int[] child0, child1, child2, next;
+    private int[] dtype;
+    private Object[] binding;
+    private int size;
+    private int root = NONE;
+
+    // While converting: the field the next node is stored into (child
+    // slot 0 to 2 of target, LIST to append to the list target after
+    // last, ROOT for the root) and the same for every open node
+    private final static int ROOT = -1, LIST = 3;
+    private int target = NONE, slot = ROOT, last = NONE;
+    private int[] open = new int[48];
+    private int top;
+
+    public final static int ARRAY_FLAG = 0x100;
+
+    public FlatAst() {
+        this(64);
+    }
+
+    public FlatAst(int capacity) {
+        kind = new int[capacity];
+        row = new int[capacity];
+        col = new int[capacity];
+        value = new int[capacity];
+        name = new int[capacity];
+        child0 = new int[capacity];
+        child1 = new int[capacity];
+        child2 = new int[capacity];
+        next = new int[capacity];
+        dtype = new int[capacity];
+        binding = new Object[capacity];
+    }
+
+    // Converts an absyn tree into its flat encoding.
+    public static FlatAst fromAbsyn(Absyn tree) {
+        FlatAst ast = new FlatAst();
+        if (tree != null && !(tree instanceof Exp)) {
+            int list = ast.newList(tree);
+            ast.store(list);
+            ast.target = list;
+            ast.slot = LIST;
+        }
+        AbsynWalker.walk(tree, ast, 0);
+        ast.open = null;
+        return ast;
+    }
+
+    public int getRoot() { return root; }
+    public int getNodeCount() { return size; }
+    public int kind(int node) { return kind[node]; }
+    public int row(int node) { return row[node]; }
+    public int col(int node) { return col[node]; }
+    public int value(int node) { return value[node]; }
+    public int child0(int node) { return child0[node]; }
+    public int child1(int node) { return child1[node]; }
+    public int child2(int node) { return child2[node]; }
+    public int next(int node) { return next[node]; }
+    public int dtype(int node) { return dtype[node]; }
+    public Object binding(int node) { return binding[node]; }
+
+    // Returns the identifier of a node, or null.
+    public String name(int node) {
+        return name[node] == NONE ? null : Names.name(name[node]);
+    }
+
+    // Returns the Names ID of a node's identifier, or NONE.
+    public int nameId(int node) {
+        return name[node];
+    }
+
+    private int newNode(int k, Absyn node) {
+        if (size == kind.length) {
+            int capacity = size * 2;
+            kind = grow(kind, capacity);
+            row = grow(row, capacity);
+            col = grow(col, capacity);
+            value = grow(value, capacity);
+            name = grow(name, capacity);
+            child0 = grow(child0, capacity);
+            child1 = grow(child1, capacity);
+            child2 = grow(child2, capacity);
+            next = grow(next, capacity);
+            dtype = grow(dtype, capacity);
+            binding = Arrays.copyOf(binding, capacity);
+        }
+        int n = size++;
+        kind[n] = k;
+        row[n] = node.row;
+        col[n] = node.col;
+        value[n] = 0;
+        name[n] = NONE;
+        child0[n] = NONE;
+        child1[n] = NONE;
+        child2[n] = NONE;
+        next[n] = NONE;
+        if (node instanceof Exp) {
+            dtype[n] = ((Exp) node).dtype;
+            binding[n] = ((Exp) node).binding;
+        } else {
+            dtype[n] = -1;
+            binding[n] = null;
+        }
+        return n;
+    }
+
+    private int newList(Absyn list) {
+        return newNode(list instanceof ExpList ? EXPLIST : VARDECLIST, list);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+
+    /* ----------------------------- Converting ---------------------------- */
+
+    // Stores a new node where the walk has got to
+    private void store(int n) {
+        if (slot == ROOT) {
+            root = n;
+        } else if (slot == LIST) {
+            if (last == NONE) {
+                child0[target] = n;
+            } else {
+                next[last] = n;
+            }
+            last = n;
+        } else if (slot == 0) {
+            child0[target] = n;
+        } else if (slot == 1) {
+            child1[target] = n;
+        } else {
+            child2[target] = n;
+        }
+    }
+
+    public boolean pre(Absyn node, int level) {
+        int n = newNode(kindOf(node), node);
+        store(n);
+        if (node instanceof IntExp) {
+            value[n] = ((IntExp) node).value;
+        } else if (node instanceof OpExp) {
+            value[n] = ((OpExp) node).op;
+        } else if (node instanceof TypeExp) {
+            TypeExp exp = (TypeExp) node;
+            value[n] = exp.type | (exp.isArray ? ARRAY_FLAG : 0);
+        } else if (node instanceof VarDeclExp) {
+            value[n] = ((VarDeclExp) node).size;
+            name[n] = ((VarDeclExp) node).id;
+        } else if (node instanceof FunctionDec) {
+            name[n] = ((FunctionDec) node).id;
+        } else if (node instanceof CallExp) {
+            name[n] = ((CallExp) node).funcId;
+        } else if (node instanceof IndexVar) {
+            name[n] = ((IndexVar) node).id;
+        } else if (node instanceof SimpleVar) {
+            name[n] = ((SimpleVar) node).id;
+        } else if (node instanceof BoolExp) {
+            value[n] = ((BoolExp) node).bool ? 1 : 0;
+        }
+
+        // The place this node was stored to is restored by post
+        if (top + 4 > open.length) {
+            open = Arrays.copyOf(open, open.length * 2);
+        }
+        open[top++] = target;
+        open[top++] = slot;
+        open[top++] = last;
+        open[top++] = n;
+        target = n;
+        return true;
+    }
+
+    public int child(Absyn node, int childSlot, Absyn child, int level) {
+        target = open[top - 1];
+        slot = childSlot;
+        last = NONE;
+        if (child != null && !(child instanceof Exp)) {
+            int list = newList(child);
+            store(list);
+            target = list;
+            slot = LIST;
+        }
+        return level + 1;
+    }
+
+    public void post(Absyn node, int level) {
+        top--;
+        last = open[--top];
+        slot = open[--top];
+        target = open[--top];
+    }
+
+    private static int kindOf(Absyn node) {
+        if (node instanceof AssignExp) return ASSIGN;
+        if (node instanceof IfExp) return IF;
+        if (node instanceof IntExp) return INT;
+        if (node instanceof OpExp) return OP;
+        if (node instanceof TypeExp) return TYPE;
+        if (node instanceof VarDeclExp) return VARDECL;
+        if (node instanceof FunctionDec) return FUNCTION;
+        if (node instanceof CompoundExp) return COMPOUND;
+        if (node instanceof CallExp) return CALL;
+        if (node instanceof WhileExp) return WHILE;
+        if (node instanceof ReturnExp) return RETURN;
+        if (node instanceof IndexVar) return INDEXVAR;
+        if (node instanceof SimpleVar) return SIMPLEVAR;
+        if (node instanceof BoolExp) return BOOL;
+        return NIL;
+    }
+
+    /* Returns true if both encode the same tree, apart from semantic
+       results and a shift of all rows. List nodes carry no position. */
+    public boolean sameTree(FlatAst other) {
+        if (size != other.size || root != other.root) {
+            return false;
+        }
+        int shift = root == NONE ? 0 : other.row[root] - row[root];
+        for (int n = 0; n < size; n++) {
+            boolean list = kind[n] == EXPLIST || kind[n] == VARDECLIST;
+            if (kind[n] != other.kind[n] || (!list && row[n] + shift != other.row[n])
+                || col[n] != other.col[n] || value[n] != other.value[n] || name[n] != other.name[n]
+                || child0[n] != other.child0[n] || child1[n] != other.child1[n]
+                || child2[n] != other.child2[n] || next[n] != other.next[n]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* ---------------------------- Rebuilding ----------------------------- */
+
+    /* Rebuilds the tree, with its dtypes and bindings, moved down by a
+       number of rows. Children come after their parent in preorder, so
+       building the nodes from the last one back finds every child built. */
+    public Absyn toAbsyn(int rows) {
+        Absyn[] nodes = new Absyn[size];
+        for (int n = size - 1; n >= 0; n--) {
+            Absyn node = build(n, nodes, row[n] + rows);
+            if (node instanceof Exp) {
+                ((Exp) node).dtype = dtype[n];
+                ((Exp) node).binding = binding[n];
+            }
+            nodes[n] = node;
+        }
+        return root == NONE ? null : nodes[root];
+    }
+
+    private Absyn build(int n, Absyn[] nodes, int r) {
+        int c = col[n];
+        Absyn a = child0[n] == NONE ? null : nodes[child0[n]];
+        Absyn b = child1[n] == NONE ? null : nodes[child1[n]];
+        Absyn d = child2[n] == NONE ? null : nodes[child2[n]];
+        switch (kind[n]) {
+            case EXPLIST: {
+                int count = 0;
+                for (int e = child0[n]; e != NONE; e = next[e]) {
+                    count++;
+                }
+                Exp[] items = new Exp[count];
+                count = 0;
+                for (int e = child0[n]; e != NONE; e = next[e]) {
+                    items[count++] = (Exp) nodes[e];
+                }
+                ExpList list = null;
+                for (int i = count - 1; i >= 0; i--) {
+                    list = new ExpList(items[i], list);
+                }
+                return list;
+            }
+            case VARDECLIST: {
+                int count = 0;
+                for (int e = child0[n]; e != NONE; e = next[e]) {
+                    count++;
+                }
+                VarDeclExp[] items = new VarDeclExp[count];
+                count = 0;
+                for (int e = child0[n]; e != NONE; e = next[e]) {
+                    items[count++] = (VarDeclExp) nodes[e];
+                }
+                VarDecList list = null;
+                for (int i = count - 1; i >= 0; i--) {
+                    list = new VarDecList(items[i], list);
+                }
+                return list;
+            }
+            case ASSIGN:
+                return new AssignExp(r, c, (Exp) a, (Exp) b);
+            case IF:
+                return new IfExp(r, c, (Exp) a, (ExpList) b, (ExpList) d);
+            case INT:
+                return new IntExp(r, c, value[n]);
+            case OP:
+                return new OpExp(r, c, (Exp) a, value[n], (Exp) b);
+            case TYPE:
+                return new TypeExp(r, c, value[n] & ~ARRAY_FLAG, (value[n] & ARRAY_FLAG) != 0);
+            case VARDECL:
+                return new VarDeclExp(r, c, (TypeExp) a, name[n], value[n]);
+            case FUNCTION:
+                return new FunctionDec(r, c, (TypeExp) a, name[n], (VarDecList) b, (CompoundExp) d);
+            case COMPOUND:
+                return new CompoundExp(r, c, (VarDecList) a, (ExpList) b);
+            case CALL:
+                return new CallExp(r, c, name[n], (ExpList) a);
+            case WHILE:
+                return new WhileExp(r, c, (Exp) a, (Exp) b);
+            case RETURN:
+                return new ReturnExp(r, c, (Exp) a);
+            case INDEXVAR:
+                return new IndexVar(r, c, name[n], (Exp) a);
+            case SIMPLEVAR:
+                return new SimpleVar(r, c, name[n]);
+            case BOOL:
+                return new BoolExp(r, c, value[n] != 0);
+            default:
+                return new NilExp(r, c);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: GlobalScope.java
+*/
+
+import java.util.Arrays;
+
+/* The global declarations of a program, filled in by one pass over its
+   top-level declarations and only read afterwards, so function bodies can
+   be checked against it from several threads. Every name keeps the
+   SymbolInfo it was first declared with and the position (index among
+   the top-level declarations) of that declaration; a name is visible to
+   the declarations from that position on, as in a single pass over the
+   program. Names IDs are mapped through an IdIndex, so the arrays hold
+   the program's own globals only. */
+public class GlobalScope {
+    private IdIndex ids = new IdIndex();
+    private SymbolInfo[] infos = new SymbolInfo[64];
+    private int[] positions = new int[64];
+
+    // Records a global declared at position, unless the name already has one
+    public void declare(int id, SymbolInfo info, int position) {
+        int index = ids.add(id);
+        if (index == infos.length) {
+            infos = Arrays.copyOf(infos, index * 2);
+            positions = Arrays.copyOf(positions, index * 2);
+        }
+        if (infos[index] == null) {
+            infos[index] = info;
+            positions[index] = position;
+        }
+    }
+
+    // The global a name refers to in the declaration at position, or null
+    public SymbolInfo lookup(int id, int position) {
+        int index = ids.get(id);
+        if (index < 0 || positions[index] > position) {
+            return null;
+        }
+        return infos[index];
+    }
+}
@@ -0,0 +1,82 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: IdIndex.java
+*/
+
+import java.util.Arrays;
+
+/* Maps the Names IDs one program uses to dense indexes 0, 1, 2, ... in
+   the order they are first added. Names IDs are shared by every
+   compilation in the process and only grow, so tables indexed by them
+   directly would be as large as every name the process has seen; tables
+   indexed through an IdIndex are as large as the program's own names.
+   Open addressing over int arrays, at most half full. */
+public class IdIndex {
+    // id + 1 of the entry in each slot, 0 if the slot is free
+    private int[] slots = new int[64];
+    private int[] indexes = new int[64];
+    // IDs by index
+    private int[] ids = new int[32];
+    private int size;
+
+    // The index of id, or -1 if it has not been added
+    public int get(int id) {
+        int mask = slots.length - 1;
+        for (int slot = hash(id) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == id + 1) {
+                return indexes[slot];
+            }
+        }
+        return -1;
+    }
+
+    // The index of id, giving it the next one if it is new
+    public int add(int id) {
+        int mask = slots.length - 1;
+        int slot = hash(id) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == id + 1) {
+                return indexes[slot];
+            }
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        slots[slot] = id + 1;
+        indexes[slot] = size;
+        if (++size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The ID added with index
+    public int id(int index) {
+        return ids[index];
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        indexes = new int[slots.length];
+        int mask = slots.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(ids[index]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = ids[index] + 1;
+            indexes[slot] = index;
+        }
+    }
+
+    // IDs are handed out in sequence, so a program's IDs mostly form
+    // runs that the low bits alone spread over distinct slots
+    private static int hash(int id) {
+        return id ^ (id >>> 16);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: IncrementalAnalyzer.java
+*/
+
+import absyn.*;
+import java.util.*;
+
+/* Checks successive versions of one program, analyzing again only the
+   top-level declarations that changed. Every declaration is fingerprinted
+   by a hash of its FlatAst encoding, with rows taken relative to the row
+   of the declaration so that moving it does not change the hash, and
+   remembered together with its analyzed tree, the errors it produced and
+   the signatures of the globals it used. The analyzed tree is kept as a
+   FlatAst, so the passes that rewrite the returned program (the
+   Optimizer) cannot change what is remembered.
+
+   A declaration is reused when an earlier version had one with the same
+   fingerprint, equal to it node by node, and every global it used (its own name included) still has
+   the same signature at that point of the program. A copy of its
+   analyzed tree, moved to the new rows, replaces the new one, and its
+   errors are reported again. Changed declarations keep the SymbolInfo of their
+   global when its signature did not change, so reused code that refers
+   to it stays valid. */
+public class IncrementalAnalyzer {
+    // Analysis results of one top-level declaration
+    private static class Entry {
+        long fingerprint;
+        // The analyzed tree and its errors, at the rows it was analyzed at
+        FlatAst decl;
+        Diagnostics errors;
+        int analyzedRow;
+        Map<String, String> uses;
+    }
+
+    private HashMap<Long, ArrayList<Entry>> cache = new HashMap<>();
+    private int analyzed;
+    private int reused;
+
+    // Declarations analyzed and reused by the last call to analyze
+    public int getAnalyzed() {
+        return analyzed;
+    }
+
+    public int getReused() {
+        return reused;
+    }
+
+    /* Analyzes a program, reporting its errors into diagnostics, and
+       returns the program to use from now on: the same list with reused
+       declarations swapped in for their new copies. */
+    public ExpList analyze(ExpList program, Diagnostics diagnostics) {
+        analyzed = 0;
+        reused = 0;
+        SemanticAnalyzer analyzer = new SemanticAnalyzer(false, diagnostics);
+        analyzer.setPreviousGlobals(previousGlobals());
+        HashMap<Long, ArrayList<Entry>> next = new HashMap<>();
+
+        for (ExpList decs = program; decs != null; decs = decs.tail) {
+            Exp decl = decs.head;
+            FlatAst flat = FlatAst.fromAbsyn(decl);
+            long fingerprint = fingerprint(flat);
+            int firstRow = decl.row;
+
+            Entry entry = findReusable(fingerprint, flat, analyzer);
+            if (entry != null) {
+                Exp copy = (Exp) entry.decl.toAbsyn(firstRow - entry.analyzedRow);
+                entry.errors.replay(diagnostics, firstRow - entry.analyzedRow);
+                analyzer.redeclare(copy);
+                decs.head = copy;
+                reused++;
+            } else {
+                entry = new Entry();
+                entry.fingerprint = fingerprint;
+                entry.analyzedRow = firstRow;
+                entry.errors = new Diagnostics();
+                entry.uses = new HashMap<>();
+                analyzer.setDiagnostics(entry.errors);
+                analyzer.setGlobalUses(entry.uses);
+                decl.accept(analyzer, 0);
+                entry.decl = FlatAst.fromAbsyn(decl);
+                entry.errors.replay(diagnostics, 0);
+                analyzed++;
+            }
+            next.computeIfAbsent(fingerprint, k -> new ArrayList<>()).add(entry);
+        }
+        analyzer.setDiagnostics(diagnostics);
+        analyzer.setGlobalUses(null);
+        cache = next;
+        return program;
+    }
+
+    // An unused cached declaration equal to this one whose globals are
+    // unchanged; the fingerprint only narrows down the candidates
+    private Entry findReusable(long fingerprint, FlatAst flat, SemanticAnalyzer analyzer) {
+        ArrayList<Entry> candidates = cache.get(fingerprint);
+        if (candidates == null) {
+            return null;
+        }
+        for (Iterator<Entry> it = candidates.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.decl.sameTree(flat) && usesUnchanged(entry, analyzer)) {
+                it.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static boolean usesUnchanged(Entry entry, SemanticAnalyzer analyzer) {
+        SymbolTable globals = analyzer.getSymbolTable();
+        for (Map.Entry<String, String> use : entry.uses.entrySet()) {
+            if (!SemanticAnalyzer.signature(globals.lookup(use.getKey())).equals(use.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The globals declared by the last version, by name
+    private HashMap<String, SymbolInfo> previousGlobals() {
+        HashMap<String, SymbolInfo> globals = new HashMap<>();
+        for (ArrayList<Entry> entries : cache.values()) {
+            for (Entry entry : entries) {
+                Object binding = entry.decl.binding(entry.decl.getRoot());
+                if (binding instanceof SymbolInfo) {
+                    SymbolInfo info = (SymbolInfo) binding;
+                    globals.put(info.name, info);
+                }
+            }
+        }
+        return globals;
+    }
+
+    /* Hash of every node's kind, row relative to the declaration, column,
+       value, name and links. List cells carry no position of their own. */
+    private static long fingerprint(FlatAst flat) {
+        int base = flat.row(flat.getRoot());
+        long h = 1125899906842597L;
+        for (int n = 0; n < flat.getNodeCount(); n++) {
+            int kind = flat.kind(n);
+            h = 31 * h + kind;
+            h = 31 * h + (kind == FlatAst.EXPLIST || kind == FlatAst.VARDECLIST ? 0 : flat.row(n) - base);
+            h = 31 * h + flat.col(n);
+            h = 31 * h + flat.value(n);
+            h = 31 * h + flat.nameId(n);
+            h = 31 * h + flat.child0(n);
+            h = 31 * h + flat.child1(n);
+            h = 31 * h + flat.child2(n);
+            h = 31 * h + flat.next(n);
+        }
+        return h;
+    }
+}
@@ -0,0 +1,505 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: Interpreter.java
+*/
+
+import absyn.*;
+import java.io.*;
+import java.util.*;
+
+/* Executes an analyzed syntax tree directly. Before running, a resolution
+   pass gives every variable reference a slot (stored on the Var node),
+   every call its FunctionDec and every function its frame size, so no
+   names are looked up while the program runs.
+
+   Memory is one int array as large as the TM simulator's data memory:
+   globals come first and each call takes a frame of frameSize slots
+   above the caller's. Arrays occupy consecutive slots, after one holding
+   their length, and are passed by their absolute address. Values are
+   plain ints, with booleans stored as 0 and 1.
+
+   Division by zero, an array index out of bounds and a call whose frame
+   no longer fits in memory stop the program with a runtime error. The
+   program runs on a thread with a stack of its own, large enough that
+   the memory, not the Java stack, limits the depth of recursion. */
+public class Interpreter implements AbsynVisitor {
+    // Results of run
+    public final static int HALTED        = 0;
+    public final static int NOT_RUN       = 1; // reported to the diagnostics
+    public final static int RUNTIME_ERROR = 2;
+
+    private final static int INPUT = Names.id("input");
+    private final static int MEMORY_SIZE = TMSimulator.DEFAULT_DATA_SIZE;
+    private final static long STACK_SIZE = 512L << 20;
+
+    // Stops the running program
+    public static class RuntimeError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RuntimeError(String message, Absyn at) {
+            super(message + " at line " + (at.row + 1) + ", column " + (at.col + 1));
+        }
+    }
+
+    private Diagnostics diagnostics = new Diagnostics();
+    private String error;
+
+    private int[] mem;
+    private int fp;
+    private int sp;
+    private FunctionDec main;
+
+    // Result of the last expression and pending return state
+    private int value;
+    private boolean returning;
+
+    private StreamTokenizer in;
+    private PrintStream out;
+
+    public Interpreter() {
+        in = new StreamTokenizer(new BufferedReader(new InputStreamReader(System.in)));
+        out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+    }
+
+    public void setInput(Reader reader) {
+        in = new StreamTokenizer(reader);
+    }
+
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    // Receives the reasons a program cannot be run
+    public void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    // The message of the runtime error that stopped the last run, or null
+    public String getError() {
+        return error;
+    }
+
+    /* Resolves the program and runs main. Returns NOT_RUN, after reporting
+       why, if there is no main or a function that is called has no body,
+       and RUNTIME_ERROR if the program was stopped (see getError). */
+    public int run(Absyn program) {
+        error = null;
+        Resolver resolver = new Resolver();
+        resolver.resolve(program);
+        main = resolver.main;
+        for (CallExp call : resolver.undefined) {
+            diagnostics.error(Diagnostics.CODEGEN, "undefined-function", call.row, call.col,
+                              "Function '{0}' is declared but never defined", call.func());
+        }
+        if (main == null) {
+            diagnostics.error(Diagnostics.CODEGEN, "missing-main", -1, -1, "No main function found");
+        }
+        if (main == null || !resolver.undefined.isEmpty()) {
+            return NOT_RUN;
+        }
+        mem = new int[Math.max(MEMORY_SIZE, resolver.globalSize)];
+        sp = resolver.globalSize;
+        fp = sp;
+        setLengths(resolver.globalArrays.stream().mapToInt(Integer::intValue).toArray(), 0);
+        Thread runner = new Thread(null, this::runMain, "interpreter", STACK_SIZE);
+        runner.start();
+        try {
+            runner.join();
+        } catch (InterruptedException e) {
+            runner.interrupt();
+            Thread.currentThread().interrupt();
+            error = "Interrupted";
+        }
+        return error == null ? HALTED : RUNTIME_ERROR;
+    }
+
+    private void runMain() {
+        try {
+            call(main, null, main);
+        } catch (RuntimeError e) {
+            error = e.getMessage();
+        } catch (StackOverflowError e) {
+            error = "Stack overflow in recursive calls";
+        } finally {
+            out.flush();
+        }
+    }
+
+    /* ----------------------------- Execution ----------------------------- */
+
+    private void call(FunctionDec function, ExpList args, Absyn at) {
+        int newFp = sp;
+        if (function.frameSize > mem.length - sp) {
+            throw new RuntimeError("Stack overflow in recursive calls", at);
+        }
+        sp += function.frameSize;
+        Arrays.fill(mem, newFp, sp, 0);
+        if (function.arrays != null) {
+            setLengths(function.arrays, newFp);
+        }
+
+        // Arguments are evaluated in the caller's frame into the new one
+        int slot = newFp;
+        for (; args != null; args = args.tail) {
+            int v = argument(args.head);
+            mem[slot++] = v;
+        }
+
+        int savedFp = fp;
+        fp = newFp;
+        function.body.accept(this, 0);
+        returning = false;
+        fp = savedFp;
+        sp = newFp;
+    }
+
+    // Writes the length slot of each array in a frame or the globals
+    private void setLengths(int[] arrays, int base) {
+        for (int i = 0; i < arrays.length; i += 2) {
+            mem[base + arrays[i] - 1] = arrays[i + 1];
+        }
+    }
+
+    // Address of an array element, checked against the array's length
+    private int element(IndexVar var) {
+        int base = address(var);
+        int index = eval(var.index);
+        if (index < 0 || index >= mem[base - 1]) {
+            throw new RuntimeError("Array index " + index + " out of bounds for length " + mem[base - 1], var);
+        }
+        return base + index;
+    }
+
+    // Arrays are passed by address, everything else by value
+    private int argument(Exp arg) {
+        if (arg instanceof SimpleVar && ((SimpleVar) arg).isArray) {
+            return address((SimpleVar) arg);
+        }
+        return eval(arg);
+    }
+
+    private int address(Var var) {
+        if (var.isGlobal) {
+            return var.slot;
+        }
+        return var.isReference ? mem[fp + var.slot] : fp + var.slot;
+    }
+
+    private int eval(Exp exp) {
+        exp.accept(this, 0);
+        return value;
+    }
+
+    public void visit(ExpList expList, int level) {
+        while (expList != null && !returning) {
+            expList.head.accept(this, level);
+            expList = expList.tail;
+        }
+    }
+
+    public void visit(CompoundExp exp, int level) {
+        if (exp.exps != null) {
+            exp.exps.accept(this, level);
+        }
+    }
+
+    public void visit(IfExp exp, int level) {
+        if (eval(exp.test) != 0) {
+            exp.thenpart.accept(this, level);
+        } else if (exp.elsepart != null) {
+            exp.elsepart.accept(this, level);
+        }
+    }
+
+    public void visit(WhileExp exp, int level) {
+        while (!returning && eval(exp.test) != 0) {
+            exp.body.accept(this, level);
+        }
+    }
+
+    public void visit(ReturnExp exp, int level) {
+        value = exp.exp != null ? eval(exp.exp) : 0;
+        returning = true;
+    }
+
+    public void visit(AssignExp exp, int level) {
+        if (exp.lhs instanceof IndexVar) {
+            int element = element((IndexVar) exp.lhs);
+            int v = eval(exp.rhs);
+            mem[element] = v;
+            value = v;
+        } else {
+            Var var = (Var) exp.lhs;
+            int v = eval(exp.rhs);
+            mem[var.isGlobal ? var.slot : fp + var.slot] = v;
+            value = v;
+        }
+    }
+
+    public void visit(IntExp exp, int level) {
+        value = exp.value;
+    }
+
+    public void visit(BoolExp exp, int level) {
+        value = exp.bool ? 1 : 0;
+    }
+
+    public void visit(SimpleVar var, int level) {
+        value = var.isArray ? address(var) : mem[var.isGlobal ? var.slot : fp + var.slot];
+    }
+
+    public void visit(IndexVar var, int level) {
+        value = mem[element(var)];
+    }
+
+    public void visit(OpExp exp, int level) {
+        switch (exp.op) {
+            case OpExp.UMINUS:
+                value = -eval(exp.right);
+                return;
+            case OpExp.NOT:
+                value = eval(exp.right) == 0 ? 1 : 0;
+                return;
+            case OpExp.AND:
+                value = eval(exp.left) != 0 && eval(exp.right) != 0 ? 1 : 0;
+                return;
+            case OpExp.OR:
+                value = eval(exp.left) != 0 || eval(exp.right) != 0 ? 1 : 0;
+                return;
+        }
+        int left = eval(exp.left);
+        int right = eval(exp.right);
+        switch (exp.op) {
+            case OpExp.PLUS:  value = left + right; break;
+            case OpExp.MINUS: value = left - right; break;
+            case OpExp.TIMES: value = left * right; break;
+            case OpExp.OVER:
+                if (right == 0) {
+                    throw new RuntimeError("Division by zero", exp);
+                }
+                value = left / right;
+                break;
+            case OpExp.EQ:  value = left == right ? 1 : 0; break;
+            case OpExp.NEQ: value = left != right ? 1 : 0; break;
+            case OpExp.LT:  value = left < right ? 1 : 0; break;
+            case OpExp.LTE: value = left <= right ? 1 : 0; break;
+            case OpExp.GT:  value = left > right ? 1 : 0; break;
+            case OpExp.GTE: value = left >= right ? 1 : 0; break;
+        }
+    }
+
+    public void visit(CallExp exp, int level) {
+        // Resolution leaves only the built-ins without a target
+        if (exp.target != null) {
+            call(exp.target, exp.args, exp);
+        } else if (exp.funcId == INPUT) {
+            try {
+                in.nextToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            value = in.ttype == StreamTokenizer.TT_NUMBER ? (int) in.nval : 0;
+        } else {
+            out.println(eval(exp.args.head));
+            value = 0;
+        }
+    }
+
+    public void visit(NilExp exp, int level) {
+        value = 0;
+    }
+
+    public void visit(TypeExp exp, int level) {
+    }
+
+    public void visit(VarDeclExp exp, int level) {
+    }
+
+    public void visit(FunctionDec exp, int level) {
+    }
+
+    public void visit(VarDecList list, int level) {
+    }
+
+    /* ----------------------------- Resolution ---------------------------- */
+
+    /* Assigns storage to declarations and copies it onto every use. Slots
+       are numbered per function in declaration order, parameters first;
+       sibling blocks do not share slots, and every array is preceded by
+       a slot for its length. The level argument is unused. */
+    private static class Resolver implements AbsynVisitor {
+        private static class Storage {
+            int slot;
+            boolean isGlobal, isArray, isReference;
+        }
+
+        private IdentityHashMap<SymbolInfo, Storage> storage = new IdentityHashMap<>();
+        private IdentityHashMap<SymbolInfo, FunctionDec> functions = new IdentityHashMap<>();
+        private int globalSize;
+        private int frameSize;
+        private boolean inFunction;
+        // Slot and length of each array of the function being resolved
+        private ArrayList<Integer> arrays = new ArrayList<>();
+        ArrayList<Integer> globalArrays = new ArrayList<>();
+        FunctionDec main;
+        // The first call of each function that has no body
+        ArrayList<CallExp> undefined = new ArrayList<>();
+        private HashSet<SymbolInfo> reported = new HashSet<>();
+
+        void resolve(Absyn program) {
+            // Definitions first, so calls can precede them
+            for (ExpList decs = program instanceof ExpList ? (ExpList) program : null; decs != null; decs = decs.tail) {
+                if (decs.head instanceof FunctionDec && ((FunctionDec) decs.head).body != null) {
+                    FunctionDec function = (FunctionDec) decs.head;
+                    functions.put((SymbolInfo) function.binding, function);
+                    if (function.name().equals("main")) {
+                        main = function;
+                    }
+                }
+            }
+            program.accept(this, 0);
+        }
+
+        // Records where a declared variable lives
+        private void declare(VarDeclExp dec, int slot, boolean isReference) {
+            Storage where = new Storage();
+            where.slot = slot;
+            where.isGlobal = !inFunction;
+            where.isArray = dec.size > 0 || dec.type.isArray;
+            where.isReference = isReference;
+            storage.put((SymbolInfo) dec.binding, where);
+        }
+
+        private void use(Var var) {
+            Storage where = storage.get((SymbolInfo) var.binding);
+            var.slot = where.slot;
+            var.isGlobal = where.isGlobal;
+            var.isArray = where.isArray;
+            var.isReference = where.isReference;
+        }
+
+        public void visit(ExpList expList, int level) {
+            while (expList != null) {
+                expList.head.accept(this, level);
+                expList = expList.tail;
+            }
+        }
+
+        public void visit(VarDecList list, int level) {
+            while (list != null) {
+                list.head.accept(this, level);
+                list = list.tail;
+            }
+        }
+
+        public void visit(VarDeclExp exp, int level) {
+            if (exp.size > 0) {
+                ArrayList<Integer> list = inFunction ? arrays : globalArrays;
+                int slot = (inFunction ? frameSize : globalSize) + 1;
+                list.add(slot);
+                list.add(exp.size);
+                declare(exp, slot, false);
+                if (inFunction) {
+                    frameSize += exp.size + 1;
+                } else {
+                    globalSize += exp.size + 1;
+                }
+            } else if (inFunction) {
+                declare(exp, frameSize++, false);
+            } else {
+                declare(exp, globalSize++, false);
+            }
+        }
+
+        public void visit(FunctionDec exp, int level) {
+            if (exp.body == null) {
+                return;
+            }
+            inFunction = true;
+            frameSize = 0;
+            arrays.clear();
+            for (VarDecList params = exp.params; params != null; params = params.tail) {
+                VarDeclExp param = params.head;
+                declare(param, frameSize++, param.type.isArray);
+            }
+            exp.body.accept(this, level);
+            exp.frameSize = frameSize;
+            exp.arrays = arrays.isEmpty() ? null : arrays.stream().mapToInt(Integer::intValue).toArray();
+            inFunction = false;
+        }
+
+        public void visit(CompoundExp exp, int level) {
+            if (exp.decs != null) {
+                exp.decs.accept(this, level);
+            }
+            if (exp.exps != null) {
+                exp.exps.accept(this, level);
+            }
+        }
+
+        public void visit(CallExp exp, int level) {
+            SymbolInfo info = (SymbolInfo) exp.binding;
+            exp.target = functions.get(info);
+            if (exp.target == null && !info.isBuiltin && reported.add(info)) {
+                undefined.add(exp);
+            }
+            if (exp.args != null) {
+                exp.args.accept(this, level);
+            }
+        }
+
+        public void visit(SimpleVar var, int level) {
+            use(var);
+        }
+
+        public void visit(IndexVar var, int level) {
+            use(var);
+            var.index.accept(this, level);
+        }
+
+        public void visit(AssignExp exp, int level) {
+            exp.lhs.accept(this, level);
+            exp.rhs.accept(this, level);
+        }
+
+        public void visit(IfExp exp, int level) {
+            exp.test.accept(this, level);
+            exp.thenpart.accept(this, level);
+            if (exp.elsepart != null) {
+                exp.elsepart.accept(this, level);
+            }
+        }
+
+        public void visit(WhileExp exp, int level) {
+            exp.test.accept(this, level);
+            exp.body.accept(this, level);
+        }
+
+        public void visit(ReturnExp exp, int level) {
+            if (exp.exp != null) {
+                exp.exp.accept(this, level);
+            }
+        }
+
+        public void visit(OpExp exp, int level) {
+            if (exp.left != null) {
+                exp.left.accept(this, level);
+            }
+            if (exp.right != null) {
+                exp.right.accept(this, level);
+            }
+        }
+
+        public void visit(IntExp exp, int level) {
+        }
+
+        public void visit(BoolExp exp, int level) {
+        }
+
+        public void visit(NilExp exp, int level) {
+        }
+
+        public void visit(TypeExp exp, int level) {
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: JsonTreeVisitor.java
+*/
+
+import absyn.*;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/* Prints the tree as JSON lines, one object per node in preorder:
+     {"node":3,"parent":1,"field":"body","kind":"CompoundExp","row":2,"col":0}
+   Nodes are numbered from 0 in the order they are written; parent is -1
+   for top-level declarations and field names the parent's field the node
+   sits in (elements of a list share the list's field). Attributes follow
+   the position: "name", "value", "op", "type" or "size" as the node
+   has them. List cells are not nodes of their own. The tree is walked
+   by AbsynWalker. */
+public class JsonTreeVisitor implements AbsynVisitor, AbsynHooks {
+  // Field names of each kind's children, by slot
+  private final static String[] ASSIGN_FIELDS = { "lhs", "rhs" };
+  private final static String[] IF_FIELDS = { "test", "thenpart", "elsepart" };
+  private final static String[] OP_FIELDS = { "left", "right" };
+  private final static String[] FUNCTION_FIELDS = { "result", "params", "body" };
+  private final static String[] COMPOUND_FIELDS = { "decs", "exps" };
+  private final static String[] WHILE_FIELDS = { "test", "body" };
+
+  private PrintWriter out;
+  private int nodes;
+  // Numbers of the nodes whose children are being written, and the
+  // field of each that is being written
+  private int[] open = new int[64];
+  private String[] fields = new String[64];
+  private int depth;
+
+  public JsonTreeVisitor( PrintWriter out ) {
+    this.out = out;
+  }
+
+  public void visit( ExpList expList, int level ) {
+    AbsynWalker.walk( expList, this, level );
+  }
+
+  public void visit( AssignExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( IfExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( IntExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( OpExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( TypeExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( VarDeclExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( FunctionDec exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( CompoundExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( CallExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( WhileExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( ReturnExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( VarDecList list, int level ) {
+    AbsynWalker.walk( list, this, level );
+  }
+
+  public void visit( IndexVar var, int level ) {
+    AbsynWalker.walk( var, this, level );
+  }
+
+  public void visit( SimpleVar var, int level ) {
+    AbsynWalker.walk( var, this, level );
+  }
+
+  public void visit( NilExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( BoolExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public boolean pre( Absyn node, int level ) {
+    if( node instanceof AssignExp ) {
+      begin( "AssignExp", node );
+    } else if( node instanceof IfExp ) {
+      begin( "IfExp", node );
+    } else if( node instanceof IntExp ) {
+      begin( "IntExp", node );
+      attribute( "value", ((IntExp) node).value );
+    } else if( node instanceof OpExp ) {
+      begin( "OpExp", node );
+      attribute( "op", SexpTreeVisitor.operator( ((OpExp) node).op ) );
+    } else if( node instanceof TypeExp ) {
+      begin( "TypeExp", node );
+      attribute( "type", SexpTreeVisitor.type( (TypeExp) node ) );
+    } else if( node instanceof VarDeclExp ) {
+      VarDeclExp exp = (VarDeclExp) node;
+      begin( "VarDeclExp", node );
+      attribute( "name", exp.name() );
+      if( exp.size >= 0 ) {
+        attribute( "size", exp.size );
+      }
+    } else if( node instanceof FunctionDec ) {
+      begin( "FunctionDec", node );
+      attribute( "name", ((FunctionDec) node).name() );
+    } else if( node instanceof CompoundExp ) {
+      begin( "CompoundExp", node );
+    } else if( node instanceof CallExp ) {
+      begin( "CallExp", node );
+      attribute( "name", ((CallExp) node).func() );
+    } else if( node instanceof WhileExp ) {
+      begin( "WhileExp", node );
+    } else if( node instanceof ReturnExp ) {
+      begin( "ReturnExp", node );
+    } else if( node instanceof IndexVar ) {
+      begin( "IndexVar", node );
+      attribute( "name", ((IndexVar) node).name() );
+    } else if( node instanceof SimpleVar ) {
+      begin( "SimpleVar", node );
+      attribute( "name", ((SimpleVar) node).name() );
+    } else if( node instanceof BoolExp ) {
+      begin( "BoolExp", node );
+      out.write( ((BoolExp) node).bool ? ",\"value\":true" : ",\"value\":false" );
+    } else {
+      begin( "NilExp", node );
+    }
+    out.write( "}\n" );
+    return true;
+  }
+
+  public int child( Absyn node, int slot, Absyn child, int level ) {
+    fields[depth - 1] = fieldName( node, slot );
+    return level + 1;
+  }
+
+  public void post( Absyn node, int level ) {
+    depth--;
+  }
+
+  private static String fieldName( Absyn node, int slot ) {
+    if( node instanceof AssignExp ) return ASSIGN_FIELDS[slot];
+    if( node instanceof IfExp ) return IF_FIELDS[slot];
+    if( node instanceof OpExp ) return OP_FIELDS[slot];
+    if( node instanceof FunctionDec ) return FUNCTION_FIELDS[slot];
+    if( node instanceof CompoundExp ) return COMPOUND_FIELDS[slot];
+    if( node instanceof WhileExp ) return WHILE_FIELDS[slot];
+    if( node instanceof VarDeclExp ) return "type";
+    if( node instanceof CallExp ) return "args";
+    if( node instanceof ReturnExp ) return "exp";
+    return "index";
+  }
+
+  // Writes the start of a node's object and opens it for its children
+  private void begin( String kind, Absyn node ) {
+    int n = nodes++;
+    out.write( "{\"node\":" );
+    out.print( n );
+    out.write( ",\"parent\":" );
+    out.print( depth == 0 ? -1 : open[depth - 1] );
+    out.write( ",\"field\":\"" );
+    out.write( depth == 0 ? "decs" : fields[depth - 1] );
+    out.write( "\",\"kind\":\"" );
+    out.write( kind );
+    out.write( "\",\"row\":" );
+    out.print( node.row );
+    out.write( ",\"col\":" );
+    out.print( node.col );
+    if( depth == open.length ) {
+      open = Arrays.copyOf( open, depth * 2 );
+      fields = Arrays.copyOf( fields, depth * 2 );
+    }
+    open[depth++] = n;
+  }
+
+  private void attribute( String name, String value ) {
+    out.write( ",\"" );
+    out.write( name );
+    out.write( "\":\"" );
+    out.write( value );
+    out.write( '"' );
+  }
+
+  private void attribute( String name, int value ) {
+    out.write( ",\"" );
+    out.write( name );
+    out.write( "\":" );
+    out.print( value );
+  }
+}
@@ -12,59 +12,358 @@
 */
    
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import absyn.*;
    
 class Main {
-  static public void main(String argv[]) {    
+  // Results of compile
+  final static int OK = 0;
+  final static int ERRORS = 1;
+  final static int USAGE = 2;
+  // A program run with -run or -sim stopped with a runtime error
+  final static int RUNTIME_ERROR = 3;
+
+  static public void main(String argv[]) {
+    for (String arg : argv) {
+      if (arg.equals("-server") || arg.equals("--server")) {
+        new CompileServer().serve(new BufferedReader(new InputStreamReader(System.in)), System.out);
+        return;
+      }
+    }
+    int status = compile(argv, null, null);
+    if (status == USAGE) {
+      System.exit(1);
+    } else if (status == RUNTIME_ERROR) {
+      System.exit(RUNTIME_ERROR);
+    }
+  }
+
+  static int compile(String argv[], parser reuse, Map<String, IncrementalAnalyzer> analyzers) {
+    return compile(argv, reuse, analyzers, System.out, System.err, null);
+  }
+
+  /* Handles one command line. A parser kept from an earlier call may be
+     passed in to be reset and reused instead of creating a new one, and
+     with -incremental the analysis results kept per file in analyzers
+     are reused for unchanged declarations. Messages are printed to out
+     and err; errors are collected in diagnostics, or in a collector
+     writing to err when it is null. The scopes printed with -s and the
+     program run with -run or -sim still use stdin and stdout. */
+  static int compile(String argv[], parser reuse, Map<String, IncrementalAnalyzer> analyzers,
+                     PrintStream out, PrintStream err, Diagnostics diagnostics) {
     /* Start the parser */
     try {
       boolean showTree = false;
+      String treeFormat = "text";
       boolean showSymbolTable = false;
+      boolean json = false;
+      boolean generateCode = false;
+      boolean simulate = false;
+      boolean profile = false;
+      boolean interpret = false;
+      boolean optimize = false;
+      boolean batch = false;
+      boolean incremental = false;
+      CompileStats stats = null;
+      int threads = 0;
+      int maxErrors = 0;
+      boolean failFast = false;
+      int recoveryLimit = 0;
+      long parseBudget = 0;
+      String cacheDirectory = null;
       String filename = null;
+      ArrayList<String> sources = new ArrayList<>();
       
       // Process command line arguments
       for (int i = 0; i < argv.length; i++) {
         if (argv[i].equals("-a")) {
           showTree = true;
+        } else if (argv[i].equals("-as")) {
+          showTree = true;
+          treeFormat = "sexp";
+        } else if (argv[i].equals("-aj")) {
+          showTree = true;
+          treeFormat = "json";
         } else if (argv[i].equals("-s")) {
           showSymbolTable = true;
+        } else if (argv[i].equals("-c")) {
+          generateCode = true;
+        } else if (argv[i].equals("-sim")) {
+          simulate = true;
+        } else if (argv[i].equals("-profile")) {
+          simulate = true;
+          profile = true;
+        } else if (argv[i].equals("-O")) {
+          optimize = true;
+        } else if (argv[i].equals("-run")) {
+          interpret = true;
+        } else if (argv[i].equals("-json")) {
+          json = true;
+        } else if (argv[i].equals("-maxerrors") && i + 1 < argv.length) {
+          maxErrors = Integer.parseInt(argv[++i]);
+        } else if (argv[i].equals("-failfast")) {
+          failFast = true;
+        } else if (argv[i].equals("-maxrecover") && i + 1 < argv.length) {
+          recoveryLimit = Integer.parseInt(argv[++i]);
+        } else if (argv[i].equals("-parsebudget") && i + 1 < argv.length) {
+          parseBudget = Long.parseLong(argv[++i]);
+        } else if (argv[i].equals("-cache") && i + 1 < argv.length) {
+          cacheDirectory = argv[++i];
+        } else if (argv[i].equals("-stats")) {
+          stats = new CompileStats();
+        } else if (argv[i].equals("-incremental")) {
+          incremental = true;
+        } else if (argv[i].equals("-batch")) {
+          batch = true;
+        } else if (argv[i].equals("-j") && i + 1 < argv.length) {
+          threads = Integer.parseInt(argv[++i]);
         } else {
           filename = argv[i];
+          sources.add(argv[i]);
         }
       }
 
+      // Many files (or directories, or @list files) compiled in this JVM
+      if (batch && !sources.isEmpty()) {
+        BatchCompiler compiler = new BatchCompiler(threads);
+        compiler.setOptimize(optimize);
+        compiler.setGenerateCode(generateCode);
+        compiler.setJson(json);
+        compiler.setMaxErrors(maxErrors);
+        compiler.setFailFast(failFast);
+        compiler.setRecoveryLimit(recoveryLimit);
+        compiler.setParseBudget(parseBudget);
+        compiler.setCacheDirectory(cacheDirectory);
+        compiler.setStats(stats != null);
+        int failed = compiler.compileAll(BatchCompiler.collectSources(sources), out);
+        return failed > 0 ? ERRORS : OK;
+      }
+
       if (filename == null) {
-        System.out.println("Usage: java -classpath /usr/share/java/cup.jar:. Main [-a] [-s] filename.cm");
-        System.exit(1);
+        out.println("Usage: java -classpath /usr/share/java/cup.jar:. Main [-a | -as | -aj] [-s] [-c] [-sim] [-profile] [-run] [-O] [-json] [-stats] [-maxerrors n] [-failfast] [-maxrecover n] [-parsebudget ms] [-cache dir] [-j n] filename.cm");
+        out.println("       java -classpath /usr/share/java/cup.jar:. Main -server");
+        out.println("       java -classpath /usr/share/java/cup.jar:. Main -batch [-j n] [-O] [-c] [-json] [-stats] [-maxerrors n] [-failfast] [-maxrecover n] [-parsebudget ms] [-cache dir] files, directories or @list");
+        return USAGE;
       }
       
-      parser p = new parser(new Lexer(new FileReader(filename)));
-      Absyn result = (Absyn)(p.parse().value);   
+      // All errors go through one collector and are written out in batches
+      if (diagnostics == null) {
+        diagnostics = new Diagnostics(new OutputStreamWriter(err));
+      }
+      diagnostics.setJson(json);
+      diagnostics.setErrorLimit(maxErrors);
+
+      if (stats != null) {
+        stats.setFilename(filename);
+        stats.start("read");
+      }
+      SourceFile file;
+      try {
+        file = SourceFile.load(filename);
+      } catch (IOException e) {
+        // A missing or unreadable file is an ordinary error, e.g. in one server request
+        err.println("Error: cannot read file '" + filename + "'");
+        return ERRORS;
+      }
+      AstCache cache = cacheDirectory != null ? new AstCache(cacheDirectory) : null;
+      Absyn result = null;
+      if (cache != null) {
+        if (stats != null) {
+          stats.start("cache");
+        }
+        result = cache.load(file);
+      }
+
+      boolean valid = true;
+      boolean runtimeError = false;
+      if (result == null) {
+        Reader source = file.reader();
+        parser p;
+        if (reuse != null) {
+          p = reuse;
+          p.reset(source);
+        } else {
+          p = new parser(new Lexer(source));
+        }
+        p.diagnostics = diagnostics;
+        p.setFailFast(failFast);
+        p.setRecoveryLimit(recoveryLimit);
+        p.setTimeBudget(parseBudget);
+
+        // With -stats all tokens are read first so lexing is timed on its own
+        java_cup.runtime.Scanner lexer = p.getScanner();
+        if (stats != null) {
+          stats.start("lex");
+          p.setScanner(stats.lex(lexer));
+          stats.start("parse");
+        }
+        try {
+          result = (Absyn)(p.parse().value);
+        } catch (Exception e) {
+          if (p.exitOnFatalError) {
+            throw e;
+          }
+          // Unrecoverable syntax error, already reported
+          result = null;
+          p.valid = false;
+        } finally {
+          p.setScanner(lexer);
+        }
+        valid = p.valid;
+        if (cache != null && valid && result != null && !diagnostics.hasErrors()) {
+          if (stats != null) {
+            stats.start("cache");
+          }
+          cache.store(file, result);
+        }
+      }
+      if (stats != null) {
+        stats.stop();
+        if (result != null) {
+          stats.countNodes(result);
+        }
+      }
+      diagnostics.flush();
 
       // Check parser validity
-        if (!parser.valid) {
-            System.err.println("Parsing completed with errors.");
+        if (!valid) {
+            err.println("Parsing completed with errors.");
         }
         else {
-            System.out.println("Parsing completed successfully.");
+            out.println("Parsing completed successfully.");
         }
-      
+
       if (showTree && result != null) {
-         System.out.println("The abstract syntax tree is:");
-         AbsynVisitor visitor = new ShowTreeVisitor();
+         out.println("The abstract syntax tree is:");
+         PrintWriter tree = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+         AbsynVisitor visitor;
+         if (treeFormat.equals("sexp")) {
+           visitor = new SexpTreeVisitor(tree);
+         } else if (treeFormat.equals("json")) {
+           visitor = new JsonTreeVisitor(tree);
+         } else {
+           visitor = new ShowTreeVisitor(tree);
+         }
          result.accept(visitor, 0); 
+         tree.flush();
       }
 
       if (result != null) {
-        SemanticAnalyzer analyzer = new SemanticAnalyzer(showSymbolTable);
-        result.accept(analyzer, 0);
-        if (showSymbolTable) {
-          analyzer.printGlobalScope();
+        if (stats != null) {
+          stats.start("semantic");
+        }
+        if (incremental && analyzers != null && !showSymbolTable && result instanceof ExpList) {
+          IncrementalAnalyzer analyzer = analyzers.computeIfAbsent(filename, k -> new IncrementalAnalyzer());
+          result = analyzer.analyze((ExpList) result, diagnostics);
+          out.println("Analyzed " + analyzer.getAnalyzed() + " declarations, reused " + analyzer.getReused() + ".");
+        } else if (threads > 1 && !showSymbolTable && result instanceof ExpList) {
+          // Function bodies checked on several threads
+          ForkJoinPool pool = new ForkJoinPool(threads);
+          ParallelAnalyzer analyzer = new ParallelAnalyzer(pool);
+          try {
+            analyzer.analyze((ExpList) result, diagnostics);
+          } finally {
+            pool.shutdown();
+          }
+          if (stats != null) {
+            stats.countSymbols(analyzer.getSymbolCount(), analyzer.getPeakDepth());
+          }
+        } else {
+          SemanticAnalyzer analyzer = new SemanticAnalyzer(showSymbolTable, diagnostics);
+          result.accept(analyzer, 0);
+          if (showSymbolTable) {
+            analyzer.printGlobalScope();
+          }
+          if (stats != null) {
+            stats.countSymbols(analyzer.getSymbolTable());
+          }
+        }
+        if (stats != null) {
+          stats.stop();
         }
+
+        // Only error free programs are optimized, run or translated to TM code
+        if (optimize && valid && !diagnostics.hasErrors()) {
+          if (stats != null) {
+            stats.start("optimize");
+          }
+          Optimizer optimizer = new Optimizer();
+          result = optimizer.optimize(result);
+          if (stats != null) {
+            stats.stop();
+          }
+          out.println("Optimization eliminated " + optimizer.getEliminated() + " nodes.");
+        }
+
+        if (interpret && valid && !diagnostics.hasErrors()) {
+          if (stats != null) {
+            stats.start("interpret");
+          }
+          Interpreter interpreter = new Interpreter();
+          interpreter.setDiagnostics(diagnostics);
+          if (interpreter.run(result) == Interpreter.RUNTIME_ERROR) {
+            err.println("Runtime error: " + interpreter.getError());
+            runtimeError = true;
+          }
+          if (stats != null) {
+            stats.stop();
+          }
+        }
+
+        if ((generateCode || simulate) && valid && !diagnostics.hasErrors()) {
+          String tmFile = filename.replaceAll("\\.cm$", "") + ".tm";
+          if (stats != null) {
+            stats.start("codegen");
+          }
+          CodeGenerator generator = new CodeGenerator(diagnostics);
+          if (generator.generate(result, new File(tmFile).getName())) {
+            if (generateCode) {
+              Writer tm = new FileWriter(tmFile);
+              generator.write(tm);
+              tm.close();
+            }
+            if (simulate) {
+              if (stats != null) {
+                stats.start("simulate");
+              }
+              TMSimulator vm = TMSimulator.fromGenerator(generator, TMSimulator.DEFAULT_DATA_SIZE);
+              vm.setProfiling(profile);
+              int status = vm.run();
+              if (status != TMSimulator.HALTED) {
+                err.println("Runtime error: " + TMSimulator.statusMessage(status));
+                runtimeError = true;
+              }
+              if (profile) {
+                vm.printProfile(err, 20);
+              }
+            }
+          }
+          if (stats != null) {
+            stats.stop();
+          }
+        }
+      }
+      diagnostics.flush();
+      if (stats != null) {
+        if (json) {
+          stats.printJson(err);
+        } else {
+          stats.print(err);
+        }
+      }
+      if (!valid || diagnostics.hasErrors()) {
+        return ERRORS;
       }
+      return runtimeError ? RUNTIME_ERROR : OK;
     } catch (Exception e) {
       /* do cleanup here -- possibly rethrow e */
-      e.printStackTrace();
+      e.printStackTrace(err);
+      return ERRORS;
+    } catch (StackOverflowError e) {
+      err.println("Error: the program is nested too deeply to compile");
+      return ERRORS;
     }
   }
 }
\ No newline at end of file
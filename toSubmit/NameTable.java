@@ -0,0 +1,104 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: NameTable.java
+*/
+
+import absyn.Names;
+
+/* Maps identifiers to their Names IDs. The Lexer looks names up
+   straight from its character buffer, so only the first occurrence of a
+   name allocates a String and asks Names for its ID; every later one
+   returns the same boxed ID without hashing a String or taking a lock.
+   Open addressing over parallel arrays of names, hashes and IDs; the
+   table doubles when half full. Not thread safe: use one table per
+   Lexer. */
+public class NameTable {
+    private String[] names;
+    private int[] hashes;
+    private Integer[] ids;
+    private int count;
+
+    public NameTable() {
+        names = new String[256];
+        hashes = new int[256];
+        ids = new Integer[256];
+    }
+
+    // The ID of the name spelled by buffer[start .. start + length)
+    public Integer id(char[] buffer, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[start + i];
+        }
+        int mask = names.length - 1;
+        int slot = mix(hash) & mask;
+        String name;
+        while ((name = names[slot]) != null) {
+            if (hashes[slot] == hash && matches(name, buffer, start, length)) {
+                return ids[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        name = new String(buffer, start, length);
+        Integer id = Names.id(name);
+        insert(slot, name, hash, id);
+        return id;
+    }
+
+    public Integer id(String text) {
+        return id(text.toCharArray(), 0, text.length());
+    }
+
+    // Number of distinct names
+    public int size() {
+        return count;
+    }
+
+    private static boolean matches(String name, char[] buffer, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int slot, String name, int hash, Integer id) {
+        names[slot] = name;
+        hashes[slot] = hash;
+        ids[slot] = id;
+        if (++count * 2 > names.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        String[] oldNames = names;
+        int[] oldHashes = hashes;
+        Integer[] oldIds = ids;
+        names = new String[oldNames.length * 2];
+        hashes = new int[oldNames.length * 2];
+        ids = new Integer[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (names[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                names[slot] = oldNames[i];
+                hashes[slot] = oldHashes[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    // Spreads String-style hashes, whose low bits cluster for similar names
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,552 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: Optimizer.java
+*/
+
+import absyn.*;
+import java.util.*;
+
+/* Simplifies an analyzed syntax tree in place. Operators whose operands
+   are constants are folded into a single IntExp or BoolExp, and identity
+   rules remove operations that cannot change their operand (x + 0, x * 1,
+   true && b, ~~b, ...). Operands are only dropped when they have no side
+   effects, and a division by a constant zero is left alone so it still
+   fails at run time.
+
+   Dead code is removed as well: an if or while whose test folds to a
+   constant keeps only the branch that can run, statements following a
+   return in the same list and expression statements without effect are
+   dropped, and functions that cannot be reached from main are deleted.
+
+   The tree must come from a SemanticAnalyzer run without errors, since
+   the rules rely on the dtype and binding of every expression. Each visit
+   leaves the node that replaces the visited one in result, with a NilExp
+   standing for a statement that was removed; the level argument is
+   unused. */
+public class Optimizer implements AbsynVisitor {
+    private Exp result;
+    private int eliminated;
+
+    // Functions called from the body of each function, filled while folding
+    private IdentityHashMap<SymbolInfo, ArrayList<SymbolInfo>> calls = new IdentityHashMap<>();
+    private ArrayList<SymbolInfo> currentCalls;
+
+    // Optimizes the whole program and returns the new tree
+    public Absyn optimize(Absyn tree) {
+        tree.accept(this, 0);
+        if (tree instanceof ExpList) {
+            tree = removeUnreachable((ExpList) tree);
+        }
+        return tree;
+    }
+
+    // Number of nodes removed so far
+    public int getEliminated() {
+        return eliminated;
+    }
+
+    private Exp fold(Exp exp) {
+        if (exp == null) {
+            return null;
+        }
+        exp.accept(this, 0);
+        return result;
+    }
+
+    /* ----------------------------- Statements ---------------------------- */
+
+    public void visit(ExpList expList, int level) {
+        for (ExpList list = expList; list != null; list = list.tail) {
+            list.head = fold(list.head);
+        }
+        result = null;
+    }
+
+    public void visit(VarDecList list, int level) {
+        result = null;
+    }
+
+    public void visit(FunctionDec exp, int level) {
+        if (exp.body != null) {
+            currentCalls = new ArrayList<>();
+            calls.put((SymbolInfo) exp.binding, currentCalls);
+            exp.body.accept(this, level);
+            currentCalls = null;
+        }
+        result = exp;
+    }
+
+    public void visit(CompoundExp exp, int level) {
+        exp.exps = foldStatements(exp.exps);
+        result = exp;
+    }
+
+    /* Folds a statement list, dropping statements without effect and
+       everything after a return. Returns the new head of the list. */
+    private ExpList foldStatements(ExpList list) {
+        ExpList head = null;
+        ExpList last = null;
+        while (list != null) {
+            ExpList next = list.tail;
+            Exp stmt = fold(list.head);
+            if (isPure(stmt)) {
+                eliminated += size(stmt) + 1;
+            } else {
+                list.head = stmt;
+                if (last == null) {
+                    head = list;
+                } else {
+                    last.tail = list;
+                }
+                last = list;
+                if (stmt instanceof ReturnExp) {
+                    eliminated += size(next);
+                    break;
+                }
+            }
+            list = next;
+        }
+        if (last != null) {
+            last.tail = null;
+        }
+        return head;
+    }
+
+    public void visit(IfExp exp, int level) {
+        exp.test = fold(exp.test);
+        if (isConstant(exp.test)) {
+            // Only one branch can run; the if, its test and the list cells go
+            ExpList kept = constValue(exp.test) != 0 ? exp.thenpart : exp.elsepart;
+            ExpList dropped = kept == exp.thenpart ? exp.elsepart : exp.thenpart;
+            if (kept != null && kept.tail == null) {
+                eliminated += 3 + size(dropped);
+                result = fold(kept.head);
+            } else if (kept != null) {
+                eliminated += 2 + size(dropped);
+                result = new CompoundExp(exp.row, exp.col, null, foldStatements(kept));
+            } else {
+                eliminated += size(exp) - 1;
+                result = new NilExp(exp.row, exp.col);
+            }
+            return;
+        }
+        if (exp.thenpart != null) {
+            exp.thenpart.accept(this, level);
+        }
+        if (exp.elsepart != null) {
+            exp.elsepart.accept(this, level);
+        }
+        result = exp;
+    }
+
+    public void visit(WhileExp exp, int level) {
+        exp.test = fold(exp.test);
+        if (isConstant(exp.test) && constValue(exp.test) == 0) {
+            eliminated += size(exp) - 1;
+            result = new NilExp(exp.row, exp.col);
+            return;
+        }
+        exp.body = fold(exp.body);
+        result = exp;
+    }
+
+    public void visit(ReturnExp exp, int level) {
+        exp.exp = fold(exp.exp);
+        result = exp;
+    }
+
+    public void visit(AssignExp exp, int level) {
+        exp.lhs = fold(exp.lhs);
+        exp.rhs = fold(exp.rhs);
+        result = exp;
+    }
+
+    public void visit(CallExp exp, int level) {
+        if (currentCalls != null && exp.binding != null) {
+            currentCalls.add((SymbolInfo) exp.binding);
+        }
+        if (exp.args != null) {
+            exp.args.accept(this, level);
+        }
+        result = exp;
+    }
+
+    public void visit(IndexVar var, int level) {
+        var.index = fold(var.index);
+        result = var;
+    }
+
+    public void visit(SimpleVar var, int level) {
+        result = var;
+    }
+
+    public void visit(IntExp exp, int level) {
+        result = exp;
+    }
+
+    public void visit(BoolExp exp, int level) {
+        result = exp;
+    }
+
+    public void visit(NilExp exp, int level) {
+        result = exp;
+    }
+
+    public void visit(TypeExp exp, int level) {
+        result = exp;
+    }
+
+    public void visit(VarDeclExp exp, int level) {
+        result = exp;
+    }
+
+    /* ----------------------------- Operators ----------------------------- */
+
+    public void visit(OpExp exp, int level) {
+        exp.left = fold(exp.left);
+        exp.right = fold(exp.right);
+        if (exp.left == null) {
+            result = foldUnary(exp);
+        } else if (exp.op == OpExp.AND || exp.op == OpExp.OR) {
+            result = foldLogical(exp);
+        } else if (isConstant(exp.left) && isConstant(exp.right)) {
+            result = foldConstant(exp);
+        } else {
+            result = simplify(exp);
+        }
+    }
+
+    private Exp foldUnary(OpExp exp) {
+        Exp operand = exp.right;
+        if (exp.op == OpExp.UMINUS) {
+            if (operand instanceof IntExp) {
+                return replace(exp, intConst(exp, -((IntExp) operand).value), 1);
+            }
+            if (isOp(operand, OpExp.UMINUS)) {
+                return replace(exp, ((OpExp) operand).right, 2);
+            }
+        } else if (exp.op == OpExp.NOT) {
+            if (operand instanceof BoolExp) {
+                return replace(exp, boolConst(exp, !((BoolExp) operand).bool), 1);
+            }
+            if (isOp(operand, OpExp.NOT)) {
+                return replace(exp, ((OpExp) operand).right, 2);
+            }
+            // ~(a < b) is a >= b
+            int inverse = operand instanceof OpExp ? inverse(((OpExp) operand).op) : -1;
+            if (inverse >= 0) {
+                ((OpExp) operand).op = inverse;
+                return replace(exp, operand, 1);
+            }
+        }
+        return exp;
+    }
+
+    // A constant left operand decides or vanishes; a constant right one
+    // only when the left can be dropped or is itself the answer
+    private Exp foldLogical(OpExp exp) {
+        boolean isAnd = exp.op == OpExp.AND;
+        if (isConstant(exp.left)) {
+            boolean left = constValue(exp.left) != 0;
+            if (left == isAnd) {
+                return replace(exp, exp.right, 2);
+            }
+            return replace(exp, exp.left, 1 + size(exp.right));
+        }
+        if (isConstant(exp.right)) {
+            boolean right = constValue(exp.right) != 0;
+            if (right == isAnd) {
+                return replace(exp, exp.left, 2);
+            }
+            if (isPure(exp.left)) {
+                return replace(exp, exp.right, 1 + size(exp.left));
+            }
+        }
+        return exp;
+    }
+
+    private Exp foldConstant(OpExp exp) {
+        int left = constValue(exp.left);
+        int right = constValue(exp.right);
+        switch (exp.op) {
+            case OpExp.PLUS:  return replace(exp, intConst(exp, left + right), 2);
+            case OpExp.MINUS: return replace(exp, intConst(exp, left - right), 2);
+            case OpExp.TIMES: return replace(exp, intConst(exp, left * right), 2);
+            case OpExp.OVER:
+                if (right == 0) {
+                    return exp;
+                }
+                return replace(exp, intConst(exp, left / right), 2);
+            case OpExp.EQ:  return replace(exp, boolConst(exp, left == right), 2);
+            case OpExp.NEQ: return replace(exp, boolConst(exp, left != right), 2);
+            case OpExp.LT:  return replace(exp, boolConst(exp, left < right), 2);
+            case OpExp.LTE: return replace(exp, boolConst(exp, left <= right), 2);
+            case OpExp.GT:  return replace(exp, boolConst(exp, left > right), 2);
+            case OpExp.GTE: return replace(exp, boolConst(exp, left >= right), 2);
+            default:        return exp;
+        }
+    }
+
+    // Identity and strength reduction rules for one constant integer operand
+    private Exp simplify(OpExp exp) {
+        Integer left = exp.left instanceof IntExp ? ((IntExp) exp.left).value : null;
+        Integer right = exp.right instanceof IntExp ? ((IntExp) exp.right).value : null;
+        switch (exp.op) {
+            case OpExp.PLUS:
+                if (right != null && right == 0) return replace(exp, exp.left, 2);
+                if (left != null && left == 0) return replace(exp, exp.right, 2);
+                break;
+            case OpExp.MINUS:
+                if (right != null && right == 0) return replace(exp, exp.left, 2);
+                if (left != null && left == 0) return replace(exp, negate(exp, exp.right), 1);
+                break;
+            case OpExp.TIMES:
+                if (right != null) {
+                    if (right == 1) return replace(exp, exp.left, 2);
+                    if (right == -1) return replace(exp, negate(exp, exp.left), 1);
+                    if (right == 0 && isPure(exp.left)) return replace(exp, exp.right, 1 + size(exp.left));
+                }
+                if (left != null) {
+                    if (left == 1) return replace(exp, exp.right, 2);
+                    if (left == -1) return replace(exp, negate(exp, exp.right), 1);
+                    if (left == 0 && isPure(exp.right)) return replace(exp, exp.left, 1 + size(exp.right));
+                }
+                break;
+            case OpExp.OVER:
+                if (right != null && right == 1) return replace(exp, exp.left, 2);
+                if (right != null && right == -1) return replace(exp, negate(exp, exp.left), 1);
+                break;
+        }
+        return exp;
+    }
+
+    /* ------------------------------ Helpers ------------------------------ */
+
+    // Counts the nodes removed by replacing exp and returns the replacement
+    private Exp replace(Exp exp, Exp replacement, int removed) {
+        eliminated += removed;
+        return replacement;
+    }
+
+    private static boolean isConstant(Exp exp) {
+        return exp instanceof IntExp || exp instanceof BoolExp;
+    }
+
+    private static int constValue(Exp exp) {
+        if (exp instanceof IntExp) {
+            return ((IntExp) exp).value;
+        }
+        return ((BoolExp) exp).bool ? 1 : 0;
+    }
+
+    private static boolean isOp(Exp exp, int op) {
+        return exp instanceof OpExp && ((OpExp) exp).op == op;
+    }
+
+    private static IntExp intConst(Exp at, int value) {
+        IntExp exp = new IntExp(at.row, at.col, value);
+        exp.dtype = TypeExp.INT;
+        return exp;
+    }
+
+    private static BoolExp boolConst(Exp at, boolean value) {
+        BoolExp exp = new BoolExp(at.row, at.col, value);
+        exp.dtype = TypeExp.BOOL;
+        return exp;
+    }
+
+    private static Exp negate(Exp at, Exp operand) {
+        if (operand instanceof IntExp) {
+            return intConst(at, -((IntExp) operand).value);
+        }
+        OpExp exp = new OpExp(at.row, at.col, null, OpExp.UMINUS, operand);
+        exp.dtype = TypeExp.INT;
+        return exp;
+    }
+
+    // The comparison that is true exactly when op is false, or -1
+    private static int inverse(int op) {
+        switch (op) {
+            case OpExp.LT:  return OpExp.GTE;
+            case OpExp.LTE: return OpExp.GT;
+            case OpExp.GT:  return OpExp.LTE;
+            case OpExp.GTE: return OpExp.LT;
+            case OpExp.EQ:  return OpExp.NEQ;
+            case OpExp.NEQ: return OpExp.EQ;
+            default:        return -1;
+        }
+    }
+
+    // True if evaluating exp cannot assign, call or fail, so it may be dropped
+    private static boolean isPure(Exp exp) {
+        if (exp == null || isConstant(exp) || exp instanceof SimpleVar || exp instanceof NilExp) {
+            return true;
+        }
+        if (exp instanceof OpExp) {
+            OpExp op = (OpExp) exp;
+            return op.op != OpExp.OVER && isPure(op.left) && isPure(op.right);
+        }
+        return false;
+    }
+
+    /* Deletes the functions, prototypes included, that no chain of calls
+       starting in main reaches. Nothing is deleted without a main. */
+    private ExpList removeUnreachable(ExpList program) {
+        SymbolInfo main = null;
+        for (ExpList decs = program; decs != null; decs = decs.tail) {
+            if (decs.head instanceof FunctionDec && ((FunctionDec) decs.head).name().equals("main")) {
+                main = (SymbolInfo) decs.head.binding;
+            }
+        }
+        if (main == null) {
+            return program;
+        }
+
+        Set<SymbolInfo> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<SymbolInfo> work = new ArrayDeque<>();
+        reachable.add(main);
+        work.push(main);
+        while (!work.isEmpty()) {
+            ArrayList<SymbolInfo> callees = calls.get(work.pop());
+            if (callees == null) {
+                continue;
+            }
+            for (SymbolInfo callee : callees) {
+                if (reachable.add(callee)) {
+                    work.push(callee);
+                }
+            }
+        }
+
+        ExpList head = null;
+        ExpList last = null;
+        for (ExpList decs = program; decs != null; decs = decs.tail) {
+            if (decs.head instanceof FunctionDec && !reachable.contains(decs.head.binding)) {
+                eliminated += size(decs.head) + 1;
+                continue;
+            }
+            if (last == null) {
+                head = decs;
+            } else {
+                last.tail = decs;
+            }
+            last = decs;
+        }
+        last.tail = null;
+        return head;
+    }
+
+    // Number of nodes in a tree, list cells included
+    private static int size(Absyn tree) {
+        if (tree == null) {
+            return 0;
+        }
+        NodeCounter counter = new NodeCounter();
+        tree.accept(counter, 0);
+        return counter.count;
+    }
+
+    private static class NodeCounter implements AbsynVisitor {
+        int count;
+
+        public void visit(ExpList expList, int level) {
+            for (; expList != null; expList = expList.tail) {
+                count++;
+                expList.head.accept(this, level);
+            }
+        }
+
+        public void visit(VarDecList list, int level) {
+            for (; list != null; list = list.tail) {
+                count++;
+                list.head.accept(this, level);
+            }
+        }
+
+        public void visit(AssignExp exp, int level) {
+            count++;
+            exp.lhs.accept(this, level);
+            exp.rhs.accept(this, level);
+        }
+
+        public void visit(IfExp exp, int level) {
+            count++;
+            exp.test.accept(this, level);
+            visit(exp.thenpart, level);
+            visit(exp.elsepart, level);
+        }
+
+        public void visit(WhileExp exp, int level) {
+            count++;
+            exp.test.accept(this, level);
+            exp.body.accept(this, level);
+        }
+
+        public void visit(ReturnExp exp, int level) {
+            count++;
+            if (exp.exp != null) {
+                exp.exp.accept(this, level);
+            }
+        }
+
+        public void visit(CompoundExp exp, int level) {
+            count++;
+            visit(exp.decs, level);
+            visit(exp.exps, level);
+        }
+
+        public void visit(FunctionDec exp, int level) {
+            count++;
+            exp.result.accept(this, level);
+            visit(exp.params, level);
+            if (exp.body != null) {
+                exp.body.accept(this, level);
+            }
+        }
+
+        public void visit(VarDeclExp exp, int level) {
+            count++;
+            exp.type.accept(this, level);
+        }
+
+        public void visit(CallExp exp, int level) {
+            count++;
+            visit(exp.args, level);
+        }
+
+        public void visit(OpExp exp, int level) {
+            count++;
+            if (exp.left != null) {
+                exp.left.accept(this, level);
+            }
+            if (exp.right != null) {
+                exp.right.accept(this, level);
+            }
+        }
+
+        public void visit(IndexVar var, int level) {
+            count++;
+            var.index.accept(this, level);
+        }
+
+        public void visit(SimpleVar var, int level) {
+            count++;
+        }
+
+        public void visit(IntExp exp, int level) {
+            count++;
+        }
+
+        public void visit(BoolExp exp, int level) {
+            count++;
+        }
+
+        public void visit(NilExp exp, int level) {
+            count++;
+        }
+
+        public void visit(TypeExp exp, int level) {
+            count++;
+        }
+    }
+}
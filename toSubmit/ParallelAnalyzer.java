@@ -0,0 +1,122 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: ParallelAnalyzer.java
+*/
+
+import absyn.*;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/* Checks a program with its function bodies analyzed in parallel. A
+   function body only depends on the globals declared before it, so a
+   first pass goes through the top-level declarations in order, declaring
+   global variables and function signatures into a GlobalScope, and then
+   every function's parameters and body are checked on a ForkJoinPool,
+   each with local scopes of its own on top of that scope (in a table
+   kept per worker thread, as every function leaves it empty). The errors of every
+   declaration are collected separately and reported in source order, so
+   the result is the same as SemanticAnalyzer's on the whole program
+   (which must still be used for -s, as the scope changes it prints would
+   interleave). */
+public class ParallelAnalyzer {
+    // What checking one function body found
+    private static class Body {
+        Diagnostics errors;
+        int symbols;
+        int peakDepth;
+    }
+
+    private ForkJoinPool pool;
+    private SymbolTable globals;
+    private int symbols;
+    private int peakDepth;
+    // A table per worker, empty between functions
+    private ThreadLocal<SymbolTable> tables = ThreadLocal.withInitial(SymbolTable::new);
+
+    public ParallelAnalyzer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // The global symbols of the last program analyzed
+    public SymbolTable getSymbolTable() {
+        return globals;
+    }
+
+    // Symbols added by the last analysis, in every table it used
+    public int getSymbolCount() {
+        return symbols;
+    }
+
+    // Deepest scope level the last analysis reached in any table
+    public int getPeakDepth() {
+        return peakDepth;
+    }
+
+    public void analyze(ExpList program, Diagnostics diagnostics) {
+        SemanticAnalyzer declarations = new SemanticAnalyzer(false, diagnostics);
+        declarations.setSignaturesOnly(true);
+        globals = declarations.getSymbolTable();
+        GlobalScope scope = new GlobalScope();
+        for (SymbolInfo builtin : globals.getCurrentScopeSymbols()) {
+            scope.declare(Names.id(builtin.name), builtin, -1);
+        }
+
+        // First pass: the globals, with the errors of each declaration
+        ArrayList<Exp> decls = new ArrayList<>();
+        ArrayList<Diagnostics> errors = new ArrayList<>();
+        for (ExpList decs = program; decs != null; decs = decs.tail) {
+            Exp decl = decs.head;
+            Diagnostics declErrors = new Diagnostics();
+            declarations.setDiagnostics(declErrors);
+            decl.accept(declarations, 0);
+
+            int id = decl instanceof FunctionDec ? ((FunctionDec) decl).id
+                   : decl instanceof VarDeclExp ? ((VarDeclExp) decl).id : -1;
+            if (id >= 0 && globals.levelOf(id) == 0) {
+                scope.declare(id, globals.lookup(id), decls.size());
+            }
+            decls.add(decl);
+            errors.add(declErrors);
+        }
+
+        // Second pass: the functions, now that the scope is complete
+        ArrayList<Future<Body>> bodies = new ArrayList<>(decls.size());
+        for (int i = 0; i < decls.size(); i++) {
+            Future<Body> body = null;
+            if (decls.get(i) instanceof FunctionDec) {
+                FunctionDec function = (FunctionDec) decls.get(i);
+                int position = i;
+                body = pool.submit(() -> {
+                    SymbolTable table = tables.get();
+                    table.setGlobals(scope, position);
+                    Body result = new Body();
+                    result.errors = new Diagnostics();
+                    int entries = table.getEntryCount();
+                    new SemanticAnalyzer(table, result.errors).analyzeFunction(function);
+                    result.symbols = table.getEntryCount() - entries;
+                    result.peakDepth = table.getPeakDepth();
+                    return result;
+                });
+            }
+            bodies.add(body);
+        }
+
+        symbols = globals.getEntryCount();
+        peakDepth = globals.getPeakDepth();
+        for (int i = 0; i < errors.size(); i++) {
+            errors.get(i).replay(diagnostics, 0);
+            if (bodies.get(i) != null) {
+                try {
+                    Body body = bodies.get(i).get();
+                    body.errors.replay(diagnostics, 0);
+                    symbols += body.symbols;
+                    peakDepth = Math.max(peakDepth, body.peakDepth);
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("Semantic analysis interrupted", e);
+                }
+            }
+        }
+    }
+}
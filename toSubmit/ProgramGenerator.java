@@ -0,0 +1,514 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: ProgramGenerator.java
+  To Run:
+    java ProgramGenerator [-seed n] [-functions n] [-statements n] [-nesting n]
+                          [-exprdepth n] [-calls p] [-noarrays] [-invalid n]
+                          [-size chars] [-o file.cm]
+*/
+
+import java.io.*;
+import java.util.Random;
+
+/* Builds C- programs for benchmarks and stress tests.
+
+   The static methods give fixed shapes: many small functions, many
+   top-level declarations, deeply nested statements, or long expressions. An instance gives random
+   programs controlled by its settings (number of functions, statements
+   per function, nesting of blocks, ifs and whiles, expression depth,
+   arrays, and how often statements call earlier functions) and by a
+   seed; the same settings and seed always give the same program.
+
+   Generated programs are valid and terminate: functions only call
+   functions defined before them, every loop counts to a small bound, and
+   a global budget checked on entry to every function limits the number
+   of calls. Calls only appear as the right side of an assignment, with
+   variables and constants as arguments, so the output does not depend on
+   the order in which operands are evaluated. Nothing overflows: every
+   stored value and every few levels of an expression pass through a
+   generated function wrap() that keeps them below WRAP in magnitude, and
+   multiplication is only by a digit, so the interpreter and the TM code
+   always print the same output. With setInvalid(n), n statements spread over the functions
+   are replaced by ones with a syntax, type, name or argument error. */
+public class ProgramGenerator {
+    private final static int GLOBALS = 4;
+    private final static int LOCALS = 3;
+    private final static int ARRAY_SIZE = 10;
+    private final static int LOOP_BOUND = 3;
+    private final static int CALL_BUDGET = 10000;
+    private final static int WRAP = 1000;
+    // Expression levels between calls of wrap
+    private final static int WRAP_LEVELS = 4;
+
+    private long seed = 1;
+    private int functions = 10;
+    private int statements = 6;
+    private int nesting = 3;
+    private int expressionDepth = 4;
+    private double callDensity = 0.2;
+    private boolean arrays = true;
+    private int invalid = 0;
+
+    // Generation state
+    private Random random;
+    private StringBuilder out;
+    private int function;
+    private int[] paramCounts;
+    private int counters;
+    private int indent;
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setFunctions(int functions) {
+        this.functions = functions;
+    }
+
+    // Top-level statements in every function body
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    // Maximum nesting of blocks, ifs and whiles inside a function body
+    public void setNesting(int nesting) {
+        this.nesting = nesting;
+    }
+
+    public void setExpressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+    }
+
+    // Chance that a statement is a call of an earlier function
+    public void setCallDensity(double callDensity) {
+        this.callDensity = callDensity;
+    }
+
+    public void setArrays(boolean arrays) {
+        this.arrays = arrays;
+    }
+
+    // Number of statements to replace by erroneous ones
+    public void setInvalid(int invalid) {
+        this.invalid = invalid;
+    }
+
+    public String generate() {
+        random = new Random(seed);
+        out = new StringBuilder();
+        paramCounts = new int[functions];
+        out.append("int budget;\n");
+        for (int g = 0; g < GLOBALS; g++) {
+            out.append("int g").append(g).append(";\n");
+        }
+        if (arrays) {
+            out.append("int a0[").append(ARRAY_SIZE).append("];\n");
+            out.append("int a1[").append(ARRAY_SIZE).append("];\n");
+        }
+        out.append("int wrap(int v) {\n");
+        out.append("  return v - (v / ").append(WRAP).append(") * ").append(WRAP).append(";\n");
+        out.append("}\n");
+        for (function = 0; function < functions; function++) {
+            genFunction();
+        }
+        genMain();
+        return out.toString();
+    }
+
+    // Generates with more functions until the program has at least chars characters
+    public String generate(int chars) {
+        String program = generate();
+        while (program.length() < chars) {
+            long estimate = (long) functions * chars / Math.max(1, program.length()) + 1;
+            functions = (int) Math.max(functions + 1, Math.min(Integer.MAX_VALUE, estimate));
+            program = generate();
+        }
+        return program;
+    }
+
+    private void genFunction() {
+        int params = 1 + function % 3;
+        paramCounts[function] = params;
+        out.append("int f").append(function).append("(");
+        for (int p = 0; p < params; p++) {
+            out.append(p > 0 ? ", " : "").append("int p").append(p);
+        }
+        if (arrays) {
+            out.append(", int v[]");
+        }
+        out.append(") {\n");
+        indent = 1;
+        counters = 0;
+        genLocals();
+        line("if (budget <= 0) return 0;");
+        line("budget = budget - 1;");
+        line("x0 = p0; x1 = 0; x2 = 1; b0 = true;");
+        genInvalid(function);
+        for (int i = 0; i < statements; i++) {
+            genStatement(nesting);
+        }
+        line("return " + wrap(intExpr(expressionDepth)) + ";");
+        out.append("}\n");
+    }
+
+    private void genMain() {
+        out.append("void main(void) {\n");
+        indent = 1;
+        counters = 0;
+        genLocals();
+        line("budget = " + CALL_BUDGET + ";");
+        line("x0 = 1; x1 = 2; x2 = 3; b0 = false;");
+        genInvalid(functions);
+        for (int f = 0; f < functions; f++) {
+            line("output(" + call(f) + ");");
+        }
+        for (int i = 0; i < statements; i++) {
+            genStatement(nesting);
+        }
+        out.append("}\n");
+    }
+
+    private void genLocals() {
+        StringBuilder decls = new StringBuilder();
+        for (int i = 0; i < LOCALS; i++) {
+            decls.append("int x").append(i).append("; ");
+        }
+        line(decls.append("bool b0;").toString());
+    }
+
+    /* ----------------------------- Statements ---------------------------- */
+
+    private void genStatement(int depth) {
+        if (function > 0 && random.nextDouble() < callDensity) {
+            line(intTarget() + " = " + call(random.nextInt(Math.min(function, functions))) + ";");
+            return;
+        }
+        int kind = random.nextInt(10);
+        if (depth == 0 && kind >= 7) {
+            kind = random.nextInt(7);
+        }
+        switch (kind) {
+            case 4:
+                line("b0 = " + boolExpr(2) + ";");
+                break;
+            case 5:
+            case 6:
+                if (kind == 5 && arrays) {
+                    line(arrayElement() + " = " + wrap(intExpr(expressionDepth)) + ";");
+                } else {
+                    line("output(" + intExpr(expressionDepth) + ");");
+                }
+                break;
+            case 7:
+                line("if (" + boolExpr(2) + ")");
+                genBlock(depth - 1);
+                if (random.nextBoolean()) {
+                    line("else");
+                    genBlock(depth - 1);
+                }
+                break;
+            case 8: {
+                String counter = "c" + counters++;
+                line("{ int " + counter + ";");
+                indent++;
+                line(counter + " = 0;");
+                line("while (" + counter + " < " + LOOP_BOUND + ")");
+                line("{");
+                indent++;
+                int n = 1 + random.nextInt(3);
+                for (int i = 0; i < n; i++) {
+                    genStatement(depth - 1);
+                }
+                line(counter + " = " + counter + " + 1;");
+                indent--;
+                line("}");
+                indent--;
+                line("}");
+                break;
+            }
+            case 9:
+                genBlock(depth - 1);
+                break;
+            default:
+                line(intTarget() + " = " + wrap(intExpr(expressionDepth)) + ";");
+                break;
+        }
+    }
+
+    private void genBlock(int depth) {
+        line("{");
+        indent++;
+        int n = 1 + random.nextInt(3);
+        for (int i = 0; i < n; i++) {
+            genStatement(depth);
+        }
+        indent--;
+        line("}");
+    }
+
+    // Emits this function's share of the erroneous statements
+    private void genInvalid(int owner) {
+        int count = invalid / (functions + 1) + (owner < invalid % (functions + 1) ? 1 : 0);
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    line("undefined" + i + " = 1;");
+                    break;
+                case 1:
+                    line("x0 = true;");
+                    break;
+                case 2:
+                    line(owner > 0 ? "x0 = f0();" : "x0 = nosuch(1);");
+                    break;
+                default:
+                    line("x0 = 1 + ;");
+                    break;
+            }
+        }
+    }
+
+    /* ---------------------------- Expressions ---------------------------- */
+
+    private String intExpr(int depth) {
+        int level = expressionDepth - depth;
+        if (level > 0 && level % WRAP_LEVELS == 0) {
+            return wrap(operand(depth));
+        }
+        return operand(depth);
+    }
+
+    private String operand(int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            return intLeaf();
+        }
+        switch (random.nextInt(10)) {
+            case 0: case 1: case 2:
+                return "(" + intExpr(depth - 1) + " + " + intExpr(depth - 1) + ")";
+            case 3: case 4:
+                return "(" + intExpr(depth - 1) + " - " + intExpr(depth - 1) + ")";
+            case 5: case 6:
+                return "(" + intExpr(depth - 1) + " * " + random.nextInt(10) + ")";
+            case 7:
+                return "(" + intExpr(depth - 1) + " / " + (1 + random.nextInt(9)) + ")";
+            case 8:
+                return "-(" + intExpr(depth - 1) + ")";
+            default:
+                return intLeaf();
+        }
+    }
+
+    private String intLeaf() {
+        switch (random.nextInt(4)) {
+            case 0:
+                return Integer.toString(random.nextInt(100));
+            case 1:
+                return arrays ? arrayElement() : intVariable();
+            default:
+                return intVariable();
+        }
+    }
+
+    private String intVariable() {
+        int n = random.nextInt(LOCALS + GLOBALS + (function < functions ? 1 : 0));
+        if (n < LOCALS) {
+            return "x" + n;
+        } else if (n < LOCALS + GLOBALS) {
+            return "g" + (n - LOCALS);
+        }
+        return "p0";
+    }
+
+    private String intTarget() {
+        int n = random.nextInt(LOCALS + GLOBALS);
+        return n < LOCALS ? "x" + n : "g" + (n - LOCALS);
+    }
+
+    private String arrayElement() {
+        int index = random.nextInt(ARRAY_SIZE);
+        if (function < functions && random.nextBoolean()) {
+            return "v[" + index + "]";
+        }
+        return "a" + random.nextInt(2) + "[" + index + "]";
+    }
+
+    private String boolExpr(int depth) {
+        int kind = random.nextInt(depth == 0 ? 2 : 6);
+        switch (kind) {
+            case 0:
+                return random.nextBoolean() ? "true" : "b0";
+            case 1:
+            case 2: {
+                String[] ops = { " < ", " <= ", " > ", " >= ", " == ", " != " };
+                return "(" + intExpr(1) + ops[random.nextInt(ops.length)] + intExpr(1) + ")";
+            }
+            case 3:
+                return "(" + boolExpr(depth - 1) + " && " + boolExpr(depth - 1) + ")";
+            case 4:
+                return "(" + boolExpr(depth - 1) + " || " + boolExpr(depth - 1) + ")";
+            default:
+                return "~(" + boolExpr(depth - 1) + ")";
+        }
+    }
+
+    private static String wrap(String exp) {
+        return "wrap(" + exp + ")";
+    }
+
+    // A call of function f with simple arguments
+    private String call(int f) {
+        StringBuilder s = new StringBuilder("f").append(f).append("(");
+        for (int p = 0; p < paramCounts[f]; p++) {
+            s.append(p > 0 ? ", " : "").append(random.nextBoolean() ? intVariable() : Integer.toString(random.nextInt(10)));
+        }
+        if (arrays) {
+            s.append(", a").append(random.nextInt(2));
+        }
+        return s.append(")").toString();
+    }
+
+    private void line(String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("  ");
+        }
+        out.append(text).append('\n');
+    }
+
+    /* --------------------------- Fixed shapes ---------------------------- */
+
+    // Many small functions, all called from main
+    public static String wide(int functions) {
+        StringBuilder s = new StringBuilder();
+        s.append("int total;\nint data[16];\n");
+        for (int f = 0; f < functions; f++) {
+            s.append("int f").append(f).append("(int a, int b) {\n");
+            s.append("  int x; bool big;\n");
+            s.append("  x = a * ").append(f % 7 + 1).append(" + b - data[").append(f % 16).append("];\n");
+            s.append("  big = x > ").append(f).append(" && b != 0;\n");
+            s.append("  if (big) x = x - b; else x = x + 1;\n");
+            s.append("  while (x > 100) x = x / 2;\n");
+            s.append("  return x;\n}\n");
+        }
+        s.append("void main(void) {\n  int i;\n  i = input();\n");
+        for (int f = 0; f < functions; f++) {
+            s.append("  total = total + f").append(f).append("(i, ").append(f).append(");\n");
+        }
+        s.append("  output(total);\n}\n");
+        return s.toString();
+    }
+
+    // count top-level declarations, every eighth a small function, then main
+    public static String declarations(int count) {
+        StringBuilder s = new StringBuilder(count * 16);
+        for (int d = 0; d < count; d++) {
+            if (d % 8 == 7) {
+                s.append("int f").append(d).append("(int a, int b) { int x; x = a + b; return x; }\n");
+            } else {
+                s.append("int g").append(d).append(";\n");
+            }
+        }
+        s.append("void main(void) {\n  output(g0);\n}\n");
+        return s.toString();
+    }
+
+    // One function whose body nests if, while and blocks depth levels deep
+    public static String deep(int depth) {
+        StringBuilder s = new StringBuilder();
+        s.append("void main(void) {\n  int x;\n  x = input();\n");
+        for (int d = 0; d < depth; d++) {
+            indent(s, d + 1);
+            switch (d % 3) {
+                case 0: s.append("if (x > ").append(d).append(") {\n"); break;
+                case 1: s.append("while (x < ").append(d).append(") {\n"); break;
+                default: s.append("{ int y").append(d).append(";\n"); break;
+            }
+            indent(s, d + 2);
+            s.append("x = x + 1;\n");
+        }
+        for (int d = depth - 1; d >= 0; d--) {
+            indent(s, d + 1);
+            s.append("}\n");
+        }
+        s.append("  output(x);\n}\n");
+        return s.toString();
+    }
+
+    // Assignments whose right sides are left-associated chains of terms
+    public static String longExpressions(int statements, int terms) {
+        String[] ops = { " + ", " - ", " * ", " + " };
+        StringBuilder s = new StringBuilder();
+        s.append("void main(void) {\n  int x; int y; int a[8];\n  x = input(); y = 1;\n");
+        for (int st = 0; st < statements; st++) {
+            s.append("  y = x");
+            for (int t = 1; t < terms; t++) {
+                s.append(ops[t % ops.length]);
+                switch (t % 5) {
+                    case 0: s.append("(y + ").append(t).append(")"); break;
+                    case 1: s.append("a[").append(t % 8).append("]"); break;
+                    case 2: s.append(t); break;
+                    default: s.append(t % 2 == 0 ? "x" : "y"); break;
+                }
+            }
+            s.append(";\n");
+        }
+        s.append("  output(y);\n}\n");
+        return s.toString();
+    }
+
+    // A wide program of at least the given size in characters
+    public static String ofSize(int chars) {
+        int functions = Math.max(1, chars / 250);
+        String program = wide(functions);
+        while (program.length() < chars) {
+            functions += Math.max(1, (chars - program.length()) / 250 + 1);
+            program = wide(functions);
+        }
+        return program;
+    }
+
+    private static void indent(StringBuilder s, int depth) {
+        for (int i = 0; i < depth; i++) {
+            s.append("  ");
+        }
+    }
+
+    public static void main(String argv[]) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        int size = 0;
+        String output = null;
+        for (int i = 0; i < argv.length; i++) {
+            String option = argv[i];
+            if (option.equals("-noarrays")) {
+                generator.setArrays(false);
+                continue;
+            }
+            if (i + 1 == argv.length) {
+                System.err.println("Missing value for " + option);
+                System.exit(1);
+            }
+            String value = argv[++i];
+            switch (option) {
+                case "-seed":       generator.setSeed(Long.parseLong(value)); break;
+                case "-functions":  generator.setFunctions(Integer.parseInt(value)); break;
+                case "-statements": generator.setStatements(Integer.parseInt(value)); break;
+                case "-nesting":    generator.setNesting(Integer.parseInt(value)); break;
+                case "-exprdepth":  generator.setExpressionDepth(Integer.parseInt(value)); break;
+                case "-calls":      generator.setCallDensity(Double.parseDouble(value)); break;
+                case "-invalid":    generator.setInvalid(Integer.parseInt(value)); break;
+                case "-size":       size = Integer.parseInt(value); break;
+                case "-o":          output = value; break;
+                default:
+                    System.err.println("Unknown option: " + option);
+                    System.exit(1);
+            }
+        }
+
+        String program = size > 0 ? generator.generate(size) : generator.generate();
+        if (output == null) {
+            System.out.print(program);
+        } else {
+            try (Writer out = new BufferedWriter(new FileWriter(output))) {
+                out.write(program);
+            }
+        }
+    }
+}
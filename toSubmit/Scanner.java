@@ -3,7 +3,6 @@
   File Name: Scanner.java
 */
 
-import java.io.InputStreamReader;
 import java_cup.runtime.Symbol;
 
 public class Scanner {
@@ -19,11 +18,13 @@ public class Scanner {
 
   public static void main(String argv[]) {
     try {
-      Scanner scanner = new Scanner(new Lexer(new InputStreamReader(System.in)));
+      Scanner scanner = new Scanner(new Lexer(SourceFile.load(System.in).reader()));
       Symbol tok = null;
       while( (tok=scanner.getNextToken()) != null ) {
         System.out.print(sym.terminalNames[tok.sym]);
-        if (tok.value != null)
+        if (tok.sym == sym.ID)
+           System.out.print("(" + absyn.Names.name((Integer) tok.value) + ")");
+        else if (tok.value != null)
            System.out.print("(" + tok.value + ")");
         System.out.println();
       }
@@ -6,13 +6,26 @@
 import absyn.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+
+public class SemanticAnalyzer implements AbsynVisitor, AbsynHooks {
+    private final static int OUTPUT = Names.id("output");
 
-public class SemanticAnalyzer implements AbsynVisitor {
     private SymbolTable symTable;
+    private Diagnostics diagnostics;
     private boolean showScopeChanges;
     private int scopeLevel;
     private SymbolInfo currentFunction;
-    private boolean returnFound;
+    // The functions being analyzed when the current one was entered
+    private List<SymbolInfo> enclosingFunctions = new ArrayList<>();
+
+    // Used by IncrementalAnalyzer: the global names looked up since the
+    // last reset with the signature they had, and the global SymbolInfo
+    // objects of the previous run that may be kept when unchanged
+    private Map<String, String> globalUses;
+    private Map<String, SymbolInfo> previousGlobals;
+    // Used by ParallelAnalyzer: declare functions without checking them
+    private boolean signaturesOnly;
 
     public SemanticAnalyzer() {
         this(false);
@@ -20,23 +33,119 @@ public class SemanticAnalyzer implements AbsynVisitor {
     
     // Constructor with option to show scope changes
     public SemanticAnalyzer(boolean showScopeChanges) {
+        this(showScopeChanges, new Diagnostics());
+    }
+
+    // Constructor reporting errors into a shared diagnostics collector
+    public SemanticAnalyzer(boolean showScopeChanges, Diagnostics diagnostics) {
         symTable = new SymbolTable();
+        this.diagnostics = diagnostics;
         this.showScopeChanges = showScopeChanges;
         this.scopeLevel = 0;
-        this.returnFound = false;
 
         if (showScopeChanges) {
         System.out.println("Entering global scope:");
         }
         
-        symTable.addSymbol("input", new SymbolInfo("input", TypeExp.INT, (List<SymbolInfo>)null));
-        symTable.addSymbol("output", new SymbolInfo("output", TypeExp.VOID, (List<SymbolInfo>)null));
+        SymbolInfo input = new SymbolInfo("input", TypeExp.INT, (List<SymbolInfo>)null);
+        SymbolInfo output = new SymbolInfo("output", TypeExp.VOID, (List<SymbolInfo>)null);
+        input.isBuiltin = true;
+        output.isBuiltin = true;
+        symTable.addSymbol("input", input);
+        symTable.addSymbol("output", output);
+    }
+
+    // Checks single functions against a table that already holds the
+    // globals, see analyzeFunction
+    SemanticAnalyzer(SymbolTable symTable, Diagnostics diagnostics) {
+        this.symTable = symTable;
+        this.diagnostics = diagnostics;
     }
 
     public SymbolTable getSymbolTable() {
         return symTable;
     }
 
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    void setDiagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    void setGlobalUses(Map<String, String> globalUses) {
+        this.globalUses = globalUses;
+    }
+
+    void setPreviousGlobals(Map<String, SymbolInfo> previousGlobals) {
+        this.previousGlobals = previousGlobals;
+    }
+
+    void setSignaturesOnly(boolean signaturesOnly) {
+        this.signaturesOnly = signaturesOnly;
+    }
+
+    /* Checks the parameters and body of a function whose signature was
+       declared by an analyzer with signaturesOnly set, reporting what
+       analyzing the whole declaration would have reported after its
+       signature. */
+    void analyzeFunction(FunctionDec exp) {
+        enterFunction(exp, (SymbolInfo) exp.binding);
+        AbsynWalker.walk(exp.params, this, 1);
+        AbsynWalker.walk(exp.body, this, 1);
+        leaveFunction(exp);
+    }
+
+    /* Adds the global of an already analyzed top-level declaration to the
+       global scope, as analyzing it again would, but without checking it
+       or reporting anything. */
+    void redeclare(Exp decl) {
+        SymbolInfo info = (SymbolInfo) decl.binding;
+        info.address = -1;
+        if (decl instanceof FunctionDec) {
+            FunctionDec function = (FunctionDec) decl;
+            info.isPrototype = function.body == null;
+            if (!symTable.addSymbol(function.id, info) && function.body != null
+                && symTable.lookup(function.id) == info) {
+                info.isPrototype = false;
+            }
+        } else {
+            symTable.addSymbol(((VarDeclExp) decl).id, info);
+        }
+    }
+
+    // Describes a global for dependency checks; "" if there is none
+    static String signature(SymbolInfo info) {
+        if (info == null) {
+            return "";
+        }
+        return info.isPrototype ? info + " prototype" : info.toString();
+    }
+
+    // Records the state of a global name before it is used or declared
+    private void recordGlobalUse(int id) {
+        if (globalUses != null && symTable.levelOf(id) <= 0) {
+            globalUses.putIfAbsent(Names.name(id), signature(symTable.lookup(id)));
+        }
+    }
+
+    // Keeps the previous run's object for an unchanged global, so code
+    // that was not analyzed again still refers to the current entry
+    private SymbolInfo adopt(SymbolInfo info) {
+        if (previousGlobals == null || scopeLevel != 0) {
+            return info;
+        }
+        SymbolInfo previous = previousGlobals.get(info.name);
+        if (previous == null || symTable.lookup(info.name) == previous
+                || !previous.toString().equals(info.toString()) || previous.isArray != info.isArray) {
+            return info;
+        }
+        previous.isPrototype = info.isPrototype;
+        previous.address = -1;
+        return previous;
+    }
+
     // Visit a list of declarations.
     public void printGlobalScope() {
         if (showScopeChanges) {
@@ -56,57 +165,198 @@ public class SemanticAnalyzer implements AbsynVisitor {
         return s.toString();
     }
 
-    // Visit a list of declarations.
+    // Every visit walks the subtree with AbsynWalker, which calls the
+    // hooks below; checks that need the types of a node's children are
+    // made in post, once the children have been visited.
     public void visit(ExpList expList, int level) {
-        while(expList != null) {
-            expList.head.accept(this, level);
-            expList = expList.tail;
-        }
+        AbsynWalker.walk(expList, this, level);
     }
 
-    // Visit an assignment expression.
     public void visit(AssignExp exp, int level) {
-        exp.lhs.accept(this, level);
-        exp.rhs.accept(this, level);
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(IfExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(IntExp exp, int level) {
+        exp.dtype = TypeExp.INT;
+    }
+
+    public void visit(OpExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(TypeExp exp, int level) {
         
-        int lhsType = getExpressionType(exp.lhs);
-        int rhsType = getExpressionType(exp.rhs);
+    }
+
+    public void visit(VarDeclExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(FunctionDec exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(CompoundExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(CallExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(WhileExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(ReturnExp exp, int level) {
+        AbsynWalker.walk(exp, this, level);
+    }
+
+    public void visit(VarDecList list, int level) {
+        AbsynWalker.walk(list, this, level);
+    }
+
+    public void visit(IndexVar var, int level) {
+        AbsynWalker.walk(var, this, level);
+    }
+
+    public void visit(SimpleVar var, int level) {
+        AbsynWalker.walk(var, this, level);
+    }
+
+    public void visit(NilExp exp, int level) {
         
-        if (lhsType != TypeExp.VOID && rhsType != TypeExp.VOID) {
-            if (lhsType != rhsType) {
-                System.err.println("Error: Type mismatch in assignment at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+    }
+
+    public void visit(BoolExp exp, int level) {
+        exp.dtype = TypeExp.BOOL;
+    }
+
+    // Called when a node is reached, before its children. Names and
+    // constants are complete once reached, so their post hook is skipped.
+    public boolean pre(Absyn node, int level) {
+        if (node instanceof SimpleVar) {
+            SimpleVar var = (SimpleVar) node;
+            SymbolInfo info = resolve(var, var.id);
+            if(info == null) {
+                error("undefined-variable", var, "Undefined variable '{0}'", var.name());
             }
-        } else {
-            System.err.println("Error: Cannot assign to/from void type at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+            return false;
+        } else if (node instanceof IntExp) {
+            ((IntExp) node).dtype = TypeExp.INT;
+            return false;
+        } else if (node instanceof BoolExp) {
+            ((BoolExp) node).dtype = TypeExp.BOOL;
+            return false;
+        } else if (node instanceof IndexVar) {
+            IndexVar var = (IndexVar) node;
+            SymbolInfo info = resolve(var, var.id);
+            if(info == null) {
+                error("undefined-array", var, "Undefined array '{0}'", var.name());
+            } else if(!info.isArray) {
+                error("not-an-array", var, "Variable '{0}' is not an array", var.name());
+            }
+        } else if (node instanceof CallExp) {
+            CallExp exp = (CallExp) node;
+            if (resolve(exp, exp.funcId) == null) {
+                // The argument expressions are still checked
+                error("undefined-function", exp, "Undefined function '{0}'", exp.func());
+            }
+        } else if (node instanceof CompoundExp) {
+            scopeLevel++;
+            if (showScopeChanges) {
+                System.out.println(getIndent(scopeLevel-1) + "Entering new block scope");
+            }
+            symTable.enterScope();
+        } else if (node instanceof FunctionDec) {
+            FunctionDec exp = (FunctionDec) node;
+            SymbolInfo entry = declareFunction(exp);
+            if (signaturesOnly) {
+                return false;
+            }
+            enterFunction(exp, entry);
         }
+        return true;
     }
 
-    // Visit a binary operation expression.
-    public void visit(IfExp exp, int level) {
-        exp.test.accept(this, level);
-        
-        int testType = getExpressionType(exp.test);
-        if (testType != TypeExp.INT && testType != TypeExp.BOOL) {
-            System.err.println("Error: Test condition in if statement must be int or bool at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+    // Called before each child of a node; checks an if or while test
+    // before the statements it guards are visited
+    public int child(Absyn node, int slot, Absyn child, int level) {
+        if (slot != 1) {
+            return level;
         }
-        
-        exp.thenpart.accept(this, level);
-        if(exp.elsepart != null) {
-            exp.elsepart.accept(this, level);
+        if (node instanceof IfExp) {
+            int testType = getExpressionType(((IfExp) node).test);
+            if (testType != TypeExp.INT && testType != TypeExp.BOOL) {
+                error("if-test-type", node, "Test condition in if statement must be int or bool");
+            }
+        } else if (node instanceof WhileExp) {
+            int testType = getExpressionType(((WhileExp) node).test);
+            if (testType != TypeExp.INT && testType != TypeExp.BOOL) {
+                error("while-test-type", node, "Test condition in while statement must be int or bool");
+            }
         }
+        return level;
     }
 
-    public void visit(IntExp exp, int level) {
-        
+    // Called after the children of a node have been visited
+    public void post(Absyn node, int level) {
+        if (node instanceof OpExp) {
+            checkOp((OpExp) node);
+        } else if (node instanceof AssignExp) {
+            checkAssign((AssignExp) node);
+        } else if (node instanceof CallExp) {
+            CallExp exp = (CallExp) node;
+            if (exp.binding != null) {
+                checkCall(exp, (SymbolInfo) exp.binding);
+            }
+        } else if (node instanceof IndexVar) {
+            IndexVar var = (IndexVar) node;
+            int indexType = getExpressionType(var.index);
+            if (indexType != TypeExp.INT) {
+                error("index-type", var, "Array index must be an integer");
+            }
+        } else if (node instanceof ReturnExp) {
+            checkReturn((ReturnExp) node);
+        } else if (node instanceof VarDeclExp) {
+            declare((VarDeclExp) node);
+        } else if (node instanceof CompoundExp) {
+            if (showScopeChanges) {
+                System.out.println(getIndent(scopeLevel-1) + "Symbol table at exit from block:");
+                for (SymbolInfo info : symTable.getCurrentScopeSymbols()) {
+                    System.out.println(getIndent(scopeLevel) + info);
+                }
+                System.out.println(getIndent(scopeLevel-1) + "Leaving block scope");
+            }
+            
+            symTable.exitScope();
+            scopeLevel--;
+        } else if (node instanceof FunctionDec) {
+            leaveFunction((FunctionDec) node);
+        }
     }
 
-    // Visit a binary operation expression.
-    public void visit(OpExp exp, int level) {
-        if(exp.left != null)
-            exp.left.accept(this, level);
-        if(exp.right != null)
-            exp.right.accept(this, level);
+    // Checks an assignment once both sides have been visited
+    private void checkAssign(AssignExp exp) {
+        int lhsType = getExpressionType(exp.lhs);
+        int rhsType = getExpressionType(exp.rhs);
         
+        if (lhsType != TypeExp.VOID && rhsType != TypeExp.VOID) {
+            if (lhsType != rhsType) {
+                error("assign-type-mismatch", exp, "Type mismatch in assignment");
+            }
+        } else {
+            error("assign-void", exp, "Cannot assign to/from void type");
+        }
+    }
+
+    // Checks a binary operation once its operands have been visited
+    private void checkOp(OpExp exp) {
+        exp.dtype = resultType(exp.op);
         switch (exp.op) {
             case OpExp.PLUS:
             case OpExp.MINUS:
@@ -117,7 +367,7 @@ public class SemanticAnalyzer implements AbsynVisitor {
                     int rightType = getExpressionType(exp.right);
                     
                     if (leftType != TypeExp.INT || rightType != TypeExp.INT) {
-                        System.err.println("Error: Type mismatch in operand at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                        error("operand-type-mismatch", exp, "Type mismatch in operand");
                     }
                 }
                 break;
@@ -133,7 +383,7 @@ public class SemanticAnalyzer implements AbsynVisitor {
                     int rightType = getExpressionType(exp.right);
                     
                     if (leftType != rightType) {
-                        System.err.println("Error: Comparison operations require operands of the same type at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                        error("compare-type-mismatch", exp, "Comparison operations require operands of the same type");
                     }
                 }
                 break;
@@ -145,7 +395,7 @@ public class SemanticAnalyzer implements AbsynVisitor {
                     int rightType = getExpressionType(exp.right);
                     
                     if (leftType != TypeExp.BOOL || rightType != TypeExp.BOOL) {
-                        System.err.println("Error: Logical operations require boolean operands at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                        error("logical-operand-type", exp, "Logical operations require boolean operands");
                     }
                 }
                 break;
@@ -155,7 +405,7 @@ public class SemanticAnalyzer implements AbsynVisitor {
                     int rightType = getExpressionType(exp.right);
                     
                     if (rightType != TypeExp.BOOL) {
-                        System.err.println("Error: Logical NOT operation requires a boolean operand at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                        error("not-operand-type", exp, "Logical NOT operation requires a boolean operand");
                     }
                 }
                 break;
@@ -165,81 +415,113 @@ public class SemanticAnalyzer implements AbsynVisitor {
                     int rightType = getExpressionType(exp.right);
                     
                     if (rightType != TypeExp.INT) {
-                        System.err.println("Error: Unary minus operation requires an integer operand at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                        error("uminus-operand-type", exp, "Unary minus operation requires an integer operand");
                     }
                 }
                 break;
         }
     }
 
-    public void visit(TypeExp exp, int level) {
-        
-    }
-
-    // For a variable declaration:
-    public void visit(VarDeclExp exp, int level) {
-        exp.type.accept(this, level);
-        
+    // Declares a variable once its type has been visited
+    private void declare(VarDeclExp exp) {
         if (exp.size == 0) {
-            System.err.println("Error: Array size cannot be 0 at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+            error("zero-array-size", exp, "Array size cannot be 0");
         }
 
         boolean isArray = exp.size != -1 || exp.type.isArray;
         
-        boolean added = symTable.addSymbol(exp.name, new SymbolInfo(exp.name, exp.type.type, isArray));
+        if (scopeLevel == 0) {
+            recordGlobalUse(exp.id);
+        }
+        SymbolInfo info = adopt(new SymbolInfo(exp.name(), exp.type.type, isArray));
+        exp.binding = info;
+        boolean added = symTable.addSymbol(exp.id, info);
         if (!added) {
-            System.err.println("Error: Redeclaration of variable '" + exp.name + "' at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+            error("redeclared-variable", exp, "Redeclaration of variable '{0}'", exp.name());
         }
     }
 
-    // For a function declaration:
-    public void visit(FunctionDec exp, int level) {
+    // Declares a function, returning the global entry its name refers to
+    private SymbolInfo declareFunction(FunctionDec exp) {
         List<SymbolInfo> paramList = new ArrayList<>();
         
         VarDecList params = exp.params;
         while (params != null) {
             VarDeclExp param = params.head;
             paramList.add(new SymbolInfo(
-                param.name, 
+                param.name(), 
                 param.type.type, 
                 param.type.isArray || param.size != -1
             ));
             params = params.tail;
         }
         
-        boolean added = symTable.addSymbol(exp.name, new SymbolInfo(exp.name, exp.result.type, paramList));
+        recordGlobalUse(exp.id);
+        SymbolInfo signature = new SymbolInfo(exp.name(), exp.result.type, paramList);
+        signature.isPrototype = exp.body == null;
+        signature = adopt(signature);
+        boolean added = symTable.addSymbol(exp.id, signature);
+        SymbolInfo entry = symTable.lookup(exp.id);
+        if (!added && entry.isPrototype && exp.body != null && entry.parameters != null) {
+            if (!sameSignature(entry, signature)) {
+                // The body is checked against its own signature
+                error("conflicting-declaration", exp,
+                      "Conflicting declaration of function '{0}': the definition does not match its prototype",
+                      exp.name());
+                exp.binding = signature;
+                return signature;
+            }
+            // The definition of a prototyped function shares the prototype's entry
+            entry.isPrototype = false;
+            added = true;
+        }
         if (!added) {
-            System.err.println("Error: Redeclaration of function '" + exp.name + "' at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+            error("redeclared-function", exp, "Redeclaration of function '{0}'", exp.name());
         }
-        
+        exp.binding = entry;
+        return entry;
+    }
+
+    // Returns true if two signatures have the same return and parameter types
+    private static boolean sameSignature(SymbolInfo a, SymbolInfo b) {
+        if (a.type != b.type || a.parameters.size() != b.parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.parameters.size(); i++) {
+            SymbolInfo p = a.parameters.get(i);
+            SymbolInfo q = b.parameters.get(i);
+            if (p.type != q.type || p.isArray != q.isArray) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Enters a declared function's scope, before its parameters and body
+    // are visited
+    private void enterFunction(FunctionDec exp, SymbolInfo entry) {
         if (showScopeChanges) {
-            System.out.println(getIndent(scopeLevel) + "Function: " + exp.name);
+            System.out.println(getIndent(scopeLevel) + "Function: " + exp.name());
             System.out.println(getIndent(scopeLevel) + "Entering function scope:");
         }
         symTable.enterScope();
         scopeLevel++;
         
-        SymbolInfo previousFunction = currentFunction;
-        currentFunction = symTable.lookup(exp.name);
-        
-        returnFound = false;
-        
-        if(exp.params != null) {
-            exp.params.accept(this, level+1);
-        }
-        
-        // Visit the function body
+        enclosingFunctions.add(currentFunction);
+        currentFunction = entry;
+    }
+
+    // Leaves a function's scope once its body has been visited
+    private void leaveFunction(FunctionDec exp) {
         if(exp.body != null) {
-            exp.body.accept(this, level + 1);
             if (showScopeChanges) {
                 System.out.println(getIndent(scopeLevel) + "Symbol Table Values:");
                 for (SymbolInfo info : symTable.getCurrentScopeSymbols()) {
                     System.out.println(getIndent(scopeLevel + 1) + info);
                 }
             }
-            if (exp.result.type != TypeExp.VOID && !returnFound) {
-                System.err.println("Error: Non-void function '" + exp.name 
-                    + "' may not return a value in all paths at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+            if (exp.result.type != TypeExp.VOID && mayFallOffEnd(exp)) {
+                error("missing-return", exp, "Non-void function '{0}' may not return a value in all paths", exp.name());
             }
         }
         
@@ -249,57 +531,32 @@ public class SemanticAnalyzer implements AbsynVisitor {
         if (showScopeChanges) {
             System.out.println(getIndent(scopeLevel) + "Leaving function scope");
         }
-        currentFunction = previousFunction;
+        currentFunction = enclosingFunctions.remove(enclosingFunctions.size() - 1);
     }
 
-    // For a compound expression:
-    public void visit(CompoundExp exp, int level) {
-        scopeLevel++;
-        if (showScopeChanges) {
-            System.out.println(getIndent(scopeLevel-1) + "Entering new block scope");
+    // Returns true if a function's body may end without a return. Bodies
+    // whose last statement is a return are the common case and need no
+    // graph.
+    private boolean mayFallOffEnd(FunctionDec exp) {
+        ExpList last = exp.body.exps;
+        while (last != null && last.tail != null) {
+            last = last.tail;
         }
-        symTable.enterScope();
-        
-        if(exp.decs != null)
-            exp.decs.accept(this, level+1);
-        if(exp.exps != null)
-            exp.exps.accept(this, level+1);
-        
-        if (showScopeChanges) {
-            System.out.println(getIndent(scopeLevel-1) + "Symbol table at exit from block:");
-            for (SymbolInfo info : symTable.getCurrentScopeSymbols()) {
-                System.out.println(getIndent(scopeLevel) + info);
-            }
-            System.out.println(getIndent(scopeLevel-1) + "Leaving block scope");
+        if (last != null && last.head instanceof ReturnExp) {
+            return false;
         }
-        
-        symTable.exitScope();
-        scopeLevel--;
+        return ControlFlowGraph.build(exp).mayFallOffEnd();
     }
 
-    // For a call expression:
-    public void visit(CallExp exp, int level) {
-        SymbolInfo funcInfo = symTable.lookup(exp.func);
-        if (funcInfo == null) {
-            System.err.println("Error: Undefined function '" + exp.func + "' at line " + (exp.row + 1) + ", column " + (exp.col + 1));
-            if (exp.args != null) {
-                exp.args.accept(this, level); // Still check argument expressions
-            }
-            return;
-        }
-        
-        if (exp.args != null) {
-            exp.args.accept(this, level);
-        }
-        
+    // Checks a call's arguments once they have been visited
+    private void checkCall(CallExp exp, SymbolInfo funcInfo) {
         if (funcInfo.parameters != null) {
             int expectedArgCount = funcInfo.parameters.size();
             int actualArgCount = countArguments(exp.args);
             
             if (expectedArgCount != actualArgCount) {
-                System.err.println("Error: Function '" + exp.func + "' expects " + expectedArgCount + 
-                                  " arguments, but got " + actualArgCount + 
-                                  " at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                error("argument-count", exp, "Function '{0}' expects {1} arguments, but got {2}",
+                      exp.func(), expectedArgCount, actualArgCount);
             } else if (actualArgCount > 0) {
                 // Check argument types if count matches
                 ExpList argList = exp.args;
@@ -310,10 +567,8 @@ public class SemanticAnalyzer implements AbsynVisitor {
                     int expectedType = funcInfo.parameters.get(argIndex).type;
                     
                     if (argType != expectedType && argType != TypeExp.VOID && expectedType != TypeExp.VOID) {
-                        System.err.println("Error: Argument " + (argIndex+1) + " of function '" + exp.func + 
-                                         "' has wrong type. Expected " + typeToString(expectedType) + 
-                                         " but got " + typeToString(argType) + 
-                                         " at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                        error("argument-type", exp, "Argument {0} of function '{1}' has wrong type. Expected {2} but got {3}",
+                              argIndex + 1, exp.func(), typeToString(expectedType), typeToString(argType));
                     }
                     
                     argList = argList.tail;
@@ -323,98 +578,42 @@ public class SemanticAnalyzer implements AbsynVisitor {
         }
         
         // Special handling for built-in functions
-        if (exp.func.equals("output")) {
+        if (exp.funcId == OUTPUT) {
             ExpList args = exp.args;
             while (args != null) {
                 int argType = getExpressionType(args.head);
                 if (argType != TypeExp.INT) {
-                    System.err.println("Error: output function requires integer arguments at line " + 
-                                      (exp.row + 1) + ", column " + (exp.col + 1));
+                    error("output-argument-type", exp, "output function requires integer arguments");
                 }
                 args = args.tail;
             }
         }
     }
 
-    // For a list of expressions.
-    public void visit(WhileExp exp, int level) {
-        exp.test.accept(this, level);
-        
-        int testType = getExpressionType(exp.test);
-        if (testType != TypeExp.INT && testType != TypeExp.BOOL) {
-            System.err.println("Error: Test condition in while statement must be int or bool at line " + (exp.row + 1) + ", column " + (exp.col + 1));
-        }
-        
-        exp.body.accept(this, level);
-    }
-
-    // For a list of return expressions.
-    public void visit(ReturnExp exp, int level) {
+    // Checks a return statement once its value has been visited
+    private void checkReturn(ReturnExp exp) {
         if (exp.exp != null) {
-            exp.exp.accept(this, level);
-            
             // Check return type matches function declaration
             if (currentFunction != null) {
                 int returnType = getExpressionType(exp.exp);
                 if (returnType != currentFunction.type) {
-                    System.err.println("Error: Return type mismatch in function '" + currentFunction.name + 
-                                     "'. Expected " + typeToString(currentFunction.type) + 
-                                     " but got " + typeToString(returnType) + 
-                                     " at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                    error("return-type", exp, "Return type mismatch in function '{0}'. Expected {1} but got {2}",
+                          currentFunction.name, typeToString(currentFunction.type), typeToString(returnType));
                 }
             }
-            
-            returnFound = true;
         } else {
             // Empty return statement
             if (currentFunction != null && currentFunction.type != TypeExp.VOID) {
-                System.err.println("Error: Non-void function '" + currentFunction.name + 
-                                 "' must return a value at line " + (exp.row + 1) + ", column " + (exp.col + 1));
+                error("missing-return-value", exp, "Non-void function '{0}' must return a value", currentFunction.name);
             }
         }
     }
-
-    // For a list of VarDecList.
-    public void visit(VarDecList list, int level) {
-        while(list != null) {
-            list.head.accept(this, level);
-            list = list.tail;
-        }
-    }
-
-    // For an array variable access.
-    public void visit(IndexVar var, int level) {
-        SymbolInfo info = symTable.lookup(var.name);
-        if(info == null) {
-            System.err.println("Error: Undefined array '" + var.name + "' at line " + (var.row + 1) + ", column " + (var.col + 1));
-        } else if(!info.isArray) {
-            System.err.println("Error: Variable '" + var.name + "' is not an array at line " + (var.row + 1) + ", column " + (var.col + 1));
-        }
-        
-        var.index.accept(this, level);
-        
-        int indexType = getExpressionType(var.index);
-        if (indexType != TypeExp.INT) {
-            System.err.println("Error: Array index must be an integer at line " + (var.row + 1) + ", column " + (var.col + 1));
-        }
-    }
-
-    // For a simple variable usage.
-    public void visit(SimpleVar var, int level) {
-        SymbolInfo info = symTable.lookup(var.name);
-        if(info == null) {
-            System.err.println("Error: Undefined variable '" + var.name + "' at line " + (var.row + 1) + ", column " + (var.col + 1));
-        }
-    }
-
-    public void visit(NilExp exp, int level) {
-        
+    
+    // Helper method to report a semantic error at a node
+    private void error(String code, Absyn node, String template, Object... args) {
+        diagnostics.error(Diagnostics.SEMANTIC, code, node.row, node.col, template, args);
     }
 
-    public void visit(BoolExp exp, int level) {
-        
-    }
-    
     // Helper method to count the number of arguments in a list
     private int countArguments(ExpList args) {
         int count = 0;
@@ -436,52 +635,36 @@ public class SemanticAnalyzer implements AbsynVisitor {
         }
     }
     
-    // Helper method to determine the type of an expression
-    private int getExpressionType(Exp exp) {
-        if (exp instanceof IntExp) {
-            return TypeExp.INT;
-        } else if (exp instanceof BoolExp) {
-            return TypeExp.BOOL;
-        } else if (exp instanceof SimpleVar) {
-            SimpleVar var = (SimpleVar) exp;
-            SymbolInfo info = symTable.lookup(var.name);
-            if (info != null) {
-                return info.type;
-            }
-        } else if (exp instanceof IndexVar) {
-            IndexVar var = (IndexVar) exp;
-            SymbolInfo info = symTable.lookup(var.name);
-            if (info != null) {
-                return info.type;
-            }
-        } else if (exp instanceof CallExp) {
-            CallExp call = (CallExp) exp;
-            SymbolInfo info = symTable.lookup(call.func);
-            if (info != null) {
-                return info.type;
-            }
-        } else if (exp instanceof OpExp) {
-            OpExp op = (OpExp) exp;
-            switch (op.op) {
-                case OpExp.PLUS:
-                case OpExp.MINUS:
-                case OpExp.TIMES:
-                case OpExp.OVER:
-                case OpExp.UMINUS:
-                    return TypeExp.INT;
-                case OpExp.LT:
-                case OpExp.GT:
-                case OpExp.LTE:
-                case OpExp.GTE:
-                case OpExp.EQ:
-                case OpExp.NEQ:
-                case OpExp.AND:
-                case OpExp.OR:
-                case OpExp.NOT:
-                    return TypeExp.BOOL;
-            }
+    // Helper method to resolve a name once and cache the result on the node.
+    // Unresolved names are treated as int, as before.
+    private SymbolInfo resolve(Exp exp, int id) {
+        recordGlobalUse(id);
+        SymbolInfo info = symTable.lookup(id);
+        exp.binding = info;
+        exp.dtype = info != null ? info.type : TypeExp.INT;
+        return info;
+    }
+
+    // Helper method to get the result type of an operator
+    private int resultType(int op) {
+        switch (op) {
+            case OpExp.LT:
+            case OpExp.GT:
+            case OpExp.LTE:
+            case OpExp.GTE:
+            case OpExp.EQ:
+            case OpExp.NEQ:
+            case OpExp.AND:
+            case OpExp.OR:
+            case OpExp.NOT:
+                return TypeExp.BOOL;
+            default:
+                return TypeExp.INT;
         }
-        
-        return TypeExp.INT;
+    }
+
+    // Helper method to get the type of an already visited expression
+    private int getExpressionType(Exp exp) {
+        return exp.dtype != -1 ? exp.dtype : TypeExp.INT;
     }
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: SexpTreeVisitor.java
+*/
+
+import absyn.*;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/* Prints the tree as S-expressions, one line per top-level declaration.
+   Every node is written as (Kind attributes children...) with the class
+   names and attributes of the indented dump; list fields become lists
+   of their own, e.g. (params ...) and (exps ...). The tree is walked by
+   AbsynWalker; the level argument is not used. */
+public class SexpTreeVisitor implements AbsynVisitor, AbsynHooks {
+  private PrintWriter out;
+  // Per node being written: whether a list field of it is open
+  private boolean[] listOpen = new boolean[64];
+  private int depth;
+
+  public SexpTreeVisitor( PrintWriter out ) {
+    this.out = out;
+  }
+
+  public void visit( ExpList expList, int level ) {
+    AbsynWalker.walk( expList, this, level );
+  }
+
+  public void visit( AssignExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( IfExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( IntExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( OpExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( TypeExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( VarDeclExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( FunctionDec exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( CompoundExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( CallExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( WhileExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( ReturnExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( VarDecList list, int level ) {
+    AbsynWalker.walk( list, this, level );
+  }
+
+  public void visit( IndexVar var, int level ) {
+    AbsynWalker.walk( var, this, level );
+  }
+
+  public void visit( SimpleVar var, int level ) {
+    AbsynWalker.walk( var, this, level );
+  }
+
+  public void visit( NilExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( BoolExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public boolean pre( Absyn node, int level ) {
+    if( depth > 0 )
+      out.write( ' ' );
+    if( depth == listOpen.length )
+      listOpen = Arrays.copyOf( listOpen, depth * 2 );
+    listOpen[depth++] = false;
+
+    if( node instanceof AssignExp ) {
+      out.write( "(AssignExp" );
+    } else if( node instanceof IfExp ) {
+      out.write( "(IfExp" );
+    } else if( node instanceof IntExp ) {
+      out.write( "(IntExp " );
+      out.print( ((IntExp) node).value );
+    } else if( node instanceof OpExp ) {
+      out.write( "(OpExp " );
+      out.write( operator( ((OpExp) node).op ) );
+    } else if( node instanceof TypeExp ) {
+      out.write( "(TypeExp " );
+      out.write( type( (TypeExp) node ) );
+    } else if( node instanceof VarDeclExp ) {
+      out.write( "(VarDeclExp " );
+      out.write( ((VarDeclExp) node).name() );
+    } else if( node instanceof FunctionDec ) {
+      out.write( "(FunctionDec " );
+      out.write( ((FunctionDec) node).name() );
+    } else if( node instanceof CompoundExp ) {
+      out.write( "(CompoundExp" );
+    } else if( node instanceof CallExp ) {
+      out.write( "(CallExp " );
+      out.write( ((CallExp) node).func() );
+    } else if( node instanceof WhileExp ) {
+      out.write( "(WhileExp" );
+    } else if( node instanceof ReturnExp ) {
+      out.write( "(ReturnExp" );
+    } else if( node instanceof IndexVar ) {
+      out.write( "(IndexVar " );
+      out.write( ((IndexVar) node).name() );
+    } else if( node instanceof SimpleVar ) {
+      out.write( "(SimpleVar " );
+      out.write( ((SimpleVar) node).name() );
+    } else if( node instanceof BoolExp ) {
+      out.write( ((BoolExp) node).bool ? "(BoolExp true" : "(BoolExp false" );
+    } else {
+      out.write( "(NilExp" );
+    }
+    return true;
+  }
+
+  // Opens the list of a list field, closing the previous one
+  public int child( Absyn node, int slot, Absyn child, int level ) {
+    closeList();
+    String field = listField( node, slot );
+    if( field != null ) {
+      out.write( " (" );
+      out.write( field );
+      listOpen[depth - 1] = true;
+    }
+    return level;
+  }
+
+  public void post( Absyn node, int level ) {
+    closeList();
+    if( node instanceof VarDeclExp && ((VarDeclExp) node).size >= 0 ) {
+      out.write( ' ' );
+      out.print( ((VarDeclExp) node).size );
+    }
+    out.write( ')' );
+    if( --depth == 0 )
+      out.println();
+  }
+
+  private void closeList() {
+    if( listOpen[depth - 1] ) {
+      out.write( ')' );
+      listOpen[depth - 1] = false;
+    }
+  }
+
+  // The name a list field is written under, null for other fields
+  private static String listField( Absyn node, int slot ) {
+    if( node instanceof FunctionDec )
+      return slot == 1 ? "params" : null;
+    if( node instanceof CompoundExp )
+      return slot == 0 ? "decs" : "exps";
+    if( node instanceof CallExp )
+      return "args";
+    return null;
+  }
+
+  // The operator as the indented dump shows it
+  static String operator( int op ) {
+    switch( op ) {
+      case OpExp.PLUS: return "+";
+      case OpExp.MINUS: return "-";
+      case OpExp.TIMES: return "*";
+      case OpExp.OVER: return "/";
+      case OpExp.EQ: return "=";
+      case OpExp.LT: return "<";
+      case OpExp.GT: return ">";
+      case OpExp.UMINUS: return "-";
+      case OpExp.LTE: return "<=";
+      case OpExp.GTE: return ">=";
+      case OpExp.NEQ: return "!=";
+      case OpExp.OR: return "||";
+      case OpExp.AND: return "&&";
+      case OpExp.NOT: return "~";
+      default: return "?";
+    }
+  }
+
+  // The type as the indented dump shows it
+  static String type( TypeExp exp ) {
+    String type = "";
+    switch( exp.type ) {
+      case TypeExp.INT:
+        type = "int";
+        break;
+      case TypeExp.BOOL:
+        type = "bool";
+        break;
+      case TypeExp.VOID:
+        type = "void";
+        break;
+    }
+    return exp.isArray ? type + "[]" : type;
+  }
+}
@@ -4,229 +4,241 @@
 */
 
 import absyn.*;
+import java.io.PrintWriter;
+import java.util.Arrays;
 
-public class ShowTreeVisitor implements AbsynVisitor {
+/* Prints the tree as indented text. Output goes to a writer the caller
+   buffers and flushes, so a large tree is not written line by line, and
+   indentation is copied from a run of spaces instead of being printed
+   one space at a time. The tree is walked by AbsynWalker, so every visit
+   method prints the whole subtree of its node however deep it is. */
+public class ShowTreeVisitor implements AbsynVisitor, AbsynHooks {
 
   final static int SPACES = 4;
 
+  private PrintWriter out;
+  private char[] spaces = new char[0];
+
+  public ShowTreeVisitor( PrintWriter out ) {
+    this.out = out;
+  }
+
   private void indent( int level ) {
-    for( int i = 0; i < level * SPACES; i++ ) System.out.print( " " );
+    int width = level * SPACES;
+    if( width > spaces.length ) {
+      spaces = new char[Math.max( width, spaces.length * 2 )];
+      Arrays.fill( spaces, ' ' );
+    }
+    out.write( spaces, 0, width );
   }
 
   public void visit( ExpList expList, int level ) {
-    while( expList != null ) {
-      expList.head.accept( this, level );
-      expList = expList.tail;
-    } 
+    AbsynWalker.walk( expList, this, level );
   }
 
   public void visit( AssignExp exp, int level ) {
-    indent( level );
-    System.out.println( "AssignExp:" );
-    level++;
-    exp.lhs.accept( this, level );
-    exp.rhs.accept( this, level );
+    AbsynWalker.walk( exp, this, level );
   }
 
   public void visit( IfExp exp, int level ) {
-    indent( level );
-    System.out.println( "IfExp:" );
-    level++;
-    exp.test.accept( this, level );
-    exp.thenpart.accept( this, level );
-    if (exp.elsepart != null )
-       exp.elsepart.accept( this, level );
+    AbsynWalker.walk( exp, this, level );
   }
 
   public void visit( IntExp exp, int level ) {
-    indent( level );
-    System.out.println( "IntExp: " + exp.value ); 
+    AbsynWalker.walk( exp, this, level );
   }
 
   public void visit( OpExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( TypeExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( VarDeclExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( FunctionDec exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( CompoundExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( CallExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( WhileExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( ReturnExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( VarDecList list, int level ) {
+    AbsynWalker.walk( list, this, level );
+  }
+
+  public void visit( IndexVar var, int level ) {
+    AbsynWalker.walk( var, this, level );
+  }
+
+  public void visit( SimpleVar var, int level ) {
+    AbsynWalker.walk( var, this, level );
+  }
+
+  public void visit( NilExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  public void visit( BoolExp exp, int level ) {
+    AbsynWalker.walk( exp, this, level );
+  }
+
+  // Prints the line of a node itself
+  public boolean pre( Absyn node, int level ) {
     indent( level );
-    System.out.print( "OpExp:" ); 
-    switch( exp.op ) {
-      case OpExp.PLUS:
-        System.out.println( " + " );
-        break;
-      case OpExp.MINUS:
-        System.out.println( " - " );
-        break;
-      case OpExp.TIMES:
-        System.out.println( " * " );
-        break;
-      case OpExp.OVER:
-        System.out.println( " / " );
-        break;
-      case OpExp.EQ:
-        System.out.println( " = " );
-        break;
-      case OpExp.LT:
-        System.out.println( " < " );
-        break;
-      case OpExp.GT:
-        System.out.println( " > " );
-        break;
-      case OpExp.UMINUS:
-        System.out.println( " - " );
-        break;
-      case OpExp.LTE:
-        System.out.println(" <= ");
-        break;
-      case OpExp.GTE:
-        System.out.println(" >= ");
-        break;
-      case OpExp.NEQ:
-        System.out.println(" != ");
-        break;
-      case OpExp.OR:
-        System.out.println(" || ");
-        break;
-      case OpExp.AND:
-        System.out.println(" && ");
-        break;
-      case OpExp.NOT:
-        System.out.println(" ~ ");
-        break;
-      default:
-        System.out.println( "Unrecognized operator at line " + exp.row + " and column " + exp.col);
+    if( node instanceof AssignExp ) {
+      out.println( "AssignExp:" );
+    } else if( node instanceof IfExp ) {
+      out.println( "IfExp:" );
+    } else if( node instanceof IntExp ) {
+      out.println( "IntExp: " + ((IntExp) node).value );
+    } else if( node instanceof OpExp ) {
+      OpExp exp = (OpExp) node;
+      out.print( "OpExp:" );
+      switch( exp.op ) {
+        case OpExp.PLUS:
+          out.println( " + " );
+          break;
+        case OpExp.MINUS:
+          out.println( " - " );
+          break;
+        case OpExp.TIMES:
+          out.println( " * " );
+          break;
+        case OpExp.OVER:
+          out.println( " / " );
+          break;
+        case OpExp.EQ:
+          out.println( " = " );
+          break;
+        case OpExp.LT:
+          out.println( " < " );
+          break;
+        case OpExp.GT:
+          out.println( " > " );
+          break;
+        case OpExp.UMINUS:
+          out.println( " - " );
+          break;
+        case OpExp.LTE:
+          out.println(" <= ");
+          break;
+        case OpExp.GTE:
+          out.println(" >= ");
+          break;
+        case OpExp.NEQ:
+          out.println(" != ");
+          break;
+        case OpExp.OR:
+          out.println(" || ");
+          break;
+        case OpExp.AND:
+          out.println(" && ");
+          break;
+        case OpExp.NOT:
+          out.println(" ~ ");
+          break;
+        default:
+          out.println( "Unrecognized operator at line " + exp.row + " and column " + exp.col);
+      }
+    } else if( node instanceof TypeExp ) {
+      TypeExp exp = (TypeExp) node;
+      String type = "";
+      switch(exp.type) {
+        case TypeExp.INT:
+          type = "int";
+          break;
+        case TypeExp.BOOL:
+          type = "bool";
+          break;
+        case TypeExp.VOID:
+          type = "void";
+          break;
+      }
+      out.println("TypeExp: " + type + (exp.isArray ? "[]" : ""));
+    } else if( node instanceof VarDeclExp ) {
+      out.println("VarDeclExp: " + ((VarDeclExp) node).name());
+    } else if( node instanceof FunctionDec ) {
+      out.println("FunctionDec: " + ((FunctionDec) node).name());
+    } else if( node instanceof CompoundExp ) {
+      out.println("CompoundExp:");
+    } else if( node instanceof CallExp ) {
+      out.println("CallExp: " + ((CallExp) node).func());
+    } else if( node instanceof WhileExp ) {
+      out.println("WhileExp:");
+    } else if( node instanceof ReturnExp ) {
+      out.println("ReturnExp:");
+    } else if( node instanceof IndexVar ) {
+      out.println("IndexVar: " + ((IndexVar) node).name());
+    } else if( node instanceof SimpleVar ) {
+      out.println("SimpleVar: " + ((SimpleVar) node).name());
+    } else if( node instanceof BoolExp ) {
+      out.println("BoolExp: " + ((BoolExp) node).bool);
+    } else {
+      out.println("NilExp");
     }
-    level++;
-    if (exp.left != null)
-       exp.left.accept( this, level );
-    if (exp.right != null)
-       exp.right.accept( this, level );
-  }
-
-  public void visit(TypeExp exp, int level) {
-    indent(level);
-    String type = "";
-    switch(exp.type) {
-      case TypeExp.INT:
-        type = "int";
-        break;
-      case TypeExp.BOOL:
-        type = "bool";
-        break;
-      case TypeExp.VOID:
-        type = "void";
-        break;
-    }
-    System.out.println("TypeExp: " + type + (exp.isArray ? "[]" : ""));
+    return true;
   }
-  
-  public void visit(VarDeclExp exp, int level) {
-    indent(level);
-    System.out.println("VarDeclExp: " + exp.name);
+
+  // Prints the label of a child field, if it has one
+  public int child( Absyn node, int slot, Absyn child, int level ) {
     level++;
-    exp.type.accept(this, level);
-    if (exp.size >= 0) {
+    if( node instanceof FunctionDec ) {
+      if( slot == 1 ) {
+        indent(level);
+        out.println("Parameters:");
+        if( child == null ) {
+          indent(level+1);
+          out.println("void");
+        }
+        return level+1;
+      } else if( slot == 2 && child != null ) {
+        indent(level);
+        out.println("Body:");
+        return level+1;
+      }
+    } else if( node instanceof CompoundExp ) {
       indent(level);
-      System.out.println("Array size: " + exp.size);
-    }
-  }
-  
-  public void visit(FunctionDec exp, int level) {
-    indent(level);
-    System.out.println("FunctionDec: " + exp.name);
-    level++;
-    exp.result.accept(this, level);
-    
-    indent(level);
-    System.out.println("Parameters:");
-    if (exp.params != null)
-      exp.params.accept(this, level+1);
-    else {
-      indent(level+1);
-      System.out.println("void");
-    }
-    
-    if (exp.body != null) {
+      out.println(slot == 0 ? "Declarations:" : "Expressions:");
+      return level+1;
+    } else if( node instanceof CallExp ) {
       indent(level);
-      System.out.println("Body:");
-      exp.body.accept(this, level+1);
-    }
-  }
-  
-  public void visit(CompoundExp exp, int level) {
-    indent(level);
-    System.out.println("CompoundExp:");
-    level++;
-    
-    indent(level);
-    System.out.println("Declarations:");
-    if (exp.decs != null)
-      exp.decs.accept(this, level+1);
-    
-    indent(level);
-    System.out.println("Expressions:");
-    if (exp.exps != null)
-      exp.exps.accept(this, level+1);
-  }
-  
-  public void visit(CallExp exp, int level) {
-    indent(level);
-    System.out.println("CallExp: " + exp.func);
-    level++;
-    
-    indent(level);
-    System.out.println("Arguments:");
-    if (exp.args != null)
-      exp.args.accept(this, level+1);
-  }
-  
-  public void visit(WhileExp exp, int level) {
-    indent(level);
-    System.out.println("WhileExp:");
-    level++;
-    
-    indent(level);
-    System.out.println("Test:");
-    exp.test.accept(this, level+1);
-    
-    indent(level);
-    System.out.println("Body:");
-    exp.body.accept(this, level+1);
-  }
-  
-  public void visit(ReturnExp exp, int level) {
-    indent(level);
-    System.out.println("ReturnExp:");
-    if (exp.exp != null)
-      exp.exp.accept(this, level+1);
-  }
-  
-  public void visit(VarDecList list, int level) {
-    while (list != null) {
-      list.head.accept(this, level);
-      list = list.tail;
+      out.println("Arguments:");
+      return level+1;
+    } else if( node instanceof WhileExp ) {
+      indent(level);
+      out.println(slot == 0 ? "Test:" : "Body:");
+      return level+1;
+    } else if( node instanceof IndexVar ) {
+      indent(level);
+      out.println("Index:");
+      return level+1;
     }
-  }
-  
-  public void visit(IndexVar var, int level) {
-    indent(level);
-    System.out.println("IndexVar: " + var.name);
-    level++;
-    
-    indent(level);
-    System.out.println("Index:");
-    var.index.accept(this, level+1);
-  }
-  
-  public void visit(SimpleVar var, int level) {
-    indent(level);
-    System.out.println("SimpleVar: " + var.name);
-  }
-  
-  public void visit(NilExp exp, int level) {
-    indent(level);
-    System.out.println("NilExp");
+    return level;
   }
 
-  public void visit(BoolExp exp, int level) {
-    indent(level);
-    System.out.println("BoolExp: " + exp.bool);
+  public void post( Absyn node, int level ) {
+    if( node instanceof VarDeclExp && ((VarDeclExp) node).size >= 0 ) {
+      indent(level+1);
+      out.println("Array size: " + ((VarDeclExp) node).size);
+    }
   }
 
 }
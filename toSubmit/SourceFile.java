@@ -0,0 +1,54 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: SourceFile.java
+*/
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+
+/* A source loaded before lexing starts, so the Lexer never waits on the
+   disk and -stats can time reading apart from lexing. Files are read
+   with one bulk read, except those of STREAM_THRESHOLD bytes or more,
+   which are streamed through a large buffer so their size does not
+   count against the heap twice. Text is decoded with the platform
+   charset, the same way FileReader reads it; the JDK's decoders copy
+   ASCII runs with vectorized loops. */
+public class SourceFile {
+    // Files at least this large are streamed instead of loaded
+    private final static long STREAM_THRESHOLD = 64L << 20;
+    private final static int STREAM_BUFFER = 1 << 16;
+
+    private Path path;
+    private byte[] bytes;
+
+    private SourceFile(Path path, byte[] bytes) {
+        this.path = path;
+        this.bytes = bytes;
+    }
+
+    public static SourceFile load(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        if (Files.size(path) >= STREAM_THRESHOLD) {
+            return new SourceFile(path, null);
+        }
+        return new SourceFile(path, Files.readAllBytes(path));
+    }
+
+    // Reads a stream to its end, e.g. System.in
+    public static SourceFile load(InputStream in) throws IOException {
+        return new SourceFile(null, in.readAllBytes());
+    }
+
+    // The whole source, or null for a file too large to be loaded
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    // A reader over the whole source; each call starts from the beginning
+    public Reader reader() throws IOException {
+        InputStream in = bytes != null ? new ByteArrayInputStream(bytes)
+                         : new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER);
+        return new InputStreamReader(in, Charset.defaultCharset());
+    }
+}
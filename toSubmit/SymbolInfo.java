@@ -11,6 +11,17 @@ public class SymbolInfo {
     public int type;
     public boolean isArray;
     public List<SymbolInfo> parameters;
+    // True for a function that has only been declared by a prototype so far
+    public boolean isPrototype;
+    // True for input and output
+    public boolean isBuiltin;
+
+    // Storage assigned by the code generator: nesting level (0 for globals),
+    // offset from gp/fp, and the code address of a function
+    public int nestLevel;
+    public int offset;
+    public int address = -1;
+    public boolean isParameter;
     
     public SymbolInfo(String name, int type, boolean isArray) {
         this.name = name;
@@ -3,66 +3,172 @@
   File Name: SymbolTable.java
 */
 
+import absyn.Names;
 import java.util.*;
 
+/* Names are keyed by their Names ID: each ID the table has seen gets a
+   dense index, and the innermost binding of every visible name sits in
+   an array by that index, so lookups never hash or compare strings and
+   the table grows with the program rather than with every name the
+   process has interned. The String methods translate the name first and are
+   meant for callers off the hot path. A table may be given a GlobalScope
+   to fall back to for names it does not bind itself, in which case its
+   own scope 0 stays empty and stands for the global scope. */
 public class SymbolTable {
-    private Stack<HashMap<String, SymbolInfo>> scopes;
+    // One declaration of a name, linked to the outer declaration it shadows
+    private static class Binding {
+        int index;
+        String name;
+        SymbolInfo info;
+        int level;
+        Binding shadowed;
+
+        Binding(int index, String name, SymbolInfo info, int level, Binding shadowed) {
+            this.index = index;
+            this.name = name;
+            this.info = info;
+            this.level = level;
+            this.shadowed = shadowed;
+        }
+    }
+
+    // Index of every ID seen, and the innermost binding of each by index
+    private IdIndex ids;
+    private Binding[] bindings;
+    // Bindings in declaration order; scopeStart marks where each scope begins
+    private ArrayList<Binding> undoLog;
+    private int[] scopeStart;
+    private int level;
+    // Globals visible to the declaration at globalPosition, if any
+    private GlobalScope globals;
+    private int globalPosition;
+    // Deepest level reached and symbols added, for statistics
+    private int peakLevel;
+    private int entries;
 
     public SymbolTable() {
-        scopes = new Stack<>();
-        enterScope(); 
+        ids = new IdIndex();
+        bindings = new Binding[64];
+        undoLog = new ArrayList<>();
+        scopeStart = new int[16];
+        level = -1;
+        enterScope();
     }
 
+
     public void enterScope() {
-        scopes.push(new HashMap<String, SymbolInfo>());
+        level++;
+        peakLevel = Math.max(peakLevel, level);
+        if (level == scopeStart.length) {
+            scopeStart = Arrays.copyOf(scopeStart, level * 2);
+        }
+        scopeStart[level] = undoLog.size();
     }
 
+    // Removes the bindings of the current scope, restoring what they shadowed.
     public void exitScope() {
-        if (!scopes.isEmpty()) {
-            scopes.pop();
+        if (level < 0) {
+            return;
+        }
+        for (int i = undoLog.size() - 1; i >= scopeStart[level]; i--) {
+            Binding b = undoLog.remove(i);
+            bindings[b.index] = b.shadowed;
         }
+        level--;
     }
 
     // Adds a symbol to the current scope. Returns true if the symbol was added successfully.
     public boolean addSymbol(String name, SymbolInfo info) {
-        HashMap<String, SymbolInfo> currentScope = scopes.peek();
-        if (currentScope.containsKey(name)) {
+        return addSymbol(Names.id(name), info);
+    }
+
+    public boolean addSymbol(int id, SymbolInfo info) {
+        int index = ids.add(id);
+        if (index == bindings.length) {
+            bindings = Arrays.copyOf(bindings, index * 2);
+        }
+        Binding outer = bindings[index];
+        if (outer != null && outer.level == level) {
             return false; // redeclaration error
         }
-        currentScope.put(name, info);
+        Binding b = new Binding(index, Names.name(id), info, level, outer);
+        bindings[index] = b;
+        undoLog.add(b);
+        entries++;
         return true;
     }
 
+    // Falls back to the globals the declaration at position sees; only
+    // scope 0 may be open, and it must be empty
+    public void setGlobals(GlobalScope globals, int position) {
+        this.globals = globals;
+        this.globalPosition = position;
+    }
+
+    public int getPeakDepth() {
+        return peakLevel;
+    }
+
+    // Number of symbols ever added, including those of scopes already left
+    public int getEntryCount() {
+        return entries;
+    }
+
     // Looks up a symbol in the current scope and enclosing scopes.
     // Returns null if the symbol is not found.
     public SymbolInfo lookup(String name) {
-        ListIterator<HashMap<String, SymbolInfo>> it = scopes.listIterator(scopes.size());
-        while (it.hasPrevious()) {
-            HashMap<String, SymbolInfo> scope = it.previous();
-            if (scope.containsKey(name)) {
-                return scope.get(name);
-            }
+        return lookup(Names.id(name));
+    }
+
+    public SymbolInfo lookup(int id) {
+        int index = ids.get(id);
+        Binding b = index < 0 ? null : bindings[index];
+        if (b == null) {
+            return globals == null ? null : globals.lookup(id, globalPosition);
         }
-        return null;
+        return b.info;
+    }
+
+    // Returns the scope level the name is bound in, or -1 if it is not visible
+    public int levelOf(String name) {
+        return levelOf(Names.id(name));
+    }
+
+    public int levelOf(int id) {
+        int index = ids.get(id);
+        Binding b = index < 0 ? null : bindings[index];
+        if (b == null) {
+            return globals != null && globals.lookup(id, globalPosition) != null ? 0 : -1;
+        }
+        return b.level;
     }
 
     // Returns the symbols in the current scope
     public Collection<SymbolInfo> getCurrentScopeSymbols() {
-        if (!scopes.isEmpty()) {
-            return scopes.peek().values();
+        if (level >= 0) {
+            return scopeSymbols(level);
         }
         return new ArrayList<SymbolInfo>();
     }
 
+    // Collects one scope's symbols, in the same order a per-scope HashMap would list them
+    private Collection<SymbolInfo> scopeSymbols(int scope) {
+        int end = scope == level ? undoLog.size() : scopeStart[scope + 1];
+        HashMap<String, SymbolInfo> symbols = new HashMap<>();
+        for (int i = scopeStart[scope]; i < end; i++) {
+            Binding b = undoLog.get(i);
+            symbols.put(b.name, b.info);
+        }
+        return symbols.values();
+    }
+
     // Print the symbol table
     public void print() {
-        int level = 0;
-        for (HashMap<String, SymbolInfo> scope : scopes) {
-            System.out.println("Scope Level " + level + ":");
-            for (SymbolInfo info : scope.values()) {
+        for (int scope = 0; scope <= level; scope++) {
+            System.out.println("Scope Level " + scope + ":");
+            for (SymbolInfo info : scopeSymbols(scope)) {
                 System.out.println("    " + info);
             }
-            level++;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,328 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: TMSimulator.java
+  To Run:
+    java TMSimulator [-profile] gcd.tm
+*/
+
+import java.io.*;
+import java.util.*;
+
+/* Runs TM code in process. Instructions are kept in parallel int arrays
+   and executed by a single switch loop. IN reads integers from the input
+   and OUT prints one value per line. In profiling mode every executed
+   location is counted, and the counts are reported per instruction and
+   per C- function, mapped back to source rows when a source map from the
+   CodeGenerator is available. */
+public class TMSimulator {
+    // Run results
+    public final static int HALTED   = 0;
+    public final static int IMEM_ERR = 1;
+    public final static int DMEM_ERR = 2;
+    public final static int ZERO_DIV = 3;
+
+    public final static int DEFAULT_DATA_SIZE = 1 << 16;
+
+    private final static int PC = CodeGenerator.PC;
+
+    private int[] op, r, d, s;
+    private int codeSize;
+    private int[] dMem;
+    private int[] reg;
+    private long steps;
+
+    // Source map, any of which may be null
+    private int[] rows, cols, functionOf;
+    private String[] functionNames;
+
+    private boolean profiling;
+    private long[] counts;
+
+    private StreamTokenizer in;
+    private PrintStream out;
+
+    public TMSimulator(int[] op, int[] r, int[] d, int[] s, int codeSize, int dataSize) {
+        this.op = op;
+        this.r = r;
+        this.d = d;
+        this.s = s;
+        this.codeSize = codeSize;
+        dMem = new int[dataSize];
+        reg = new int[8];
+        in = new StreamTokenizer(new BufferedReader(new InputStreamReader(System.in)));
+        out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+    }
+
+    // Loads the code produced by a CodeGenerator together with its source map
+    public static TMSimulator fromGenerator(CodeGenerator generator, int dataSize) {
+        TMSimulator vm = new TMSimulator(generator.getOps(), generator.getR(), generator.getD(),
+                                         generator.getS(), generator.getCodeSize(), dataSize);
+        vm.rows = generator.getRows();
+        vm.cols = generator.getCols();
+        vm.functionOf = generator.getFunctionOf();
+        vm.functionNames = generator.getFunctionNames();
+        return vm;
+    }
+
+    /* Loads a TM listing. Lines look like "  5:  LDA  0,1(7)  comment" or
+       "  9:  ADD  0,0,1" and lines starting with '*' are comments; a
+       "* processing function: f" comment starts the code of function f. */
+    public static TMSimulator fromListing(Reader reader, int dataSize) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        int[] op = new int[256], r = new int[256], d = new int[256], s = new int[256];
+        int[] functionOf = new int[256];
+        ArrayList<String> functionNames = new ArrayList<>();
+        HashMap<String, Integer> opcodes = new HashMap<>();
+        for (int i = 0; i < CodeGenerator.OPNAMES.length; i++) {
+            opcodes.put(CodeGenerator.OPNAMES[i], i);
+        }
+        int size = 0;
+        int function = -1;
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("*")) {
+                int at = line.indexOf("processing function:");
+                if (at >= 0) {
+                    functionNames.add(line.substring(at + "processing function:".length()).trim());
+                    function = functionNames.size() - 1;
+                }
+                continue;
+            }
+            try {
+                int colon = line.indexOf(':');
+                int loc = Integer.parseInt(line.substring(0, colon).trim());
+                StringTokenizer tokens = new StringTokenizer(line.substring(colon + 1), " \t,()");
+                Integer code = opcodes.get(tokens.nextToken());
+                if (code == null) {
+                    throw new IOException("unknown opcode");
+                }
+                if (loc >= op.length) {
+                    int capacity = Math.max(op.length * 2, loc + 1);
+                    op = Arrays.copyOf(op, capacity);
+                    r = Arrays.copyOf(r, capacity);
+                    d = Arrays.copyOf(d, capacity);
+                    s = Arrays.copyOf(s, capacity);
+                    functionOf = Arrays.copyOf(functionOf, capacity);
+                }
+                op[loc] = code;
+                r[loc] = Integer.parseInt(tokens.nextToken());
+                d[loc] = Integer.parseInt(tokens.nextToken());
+                s[loc] = Integer.parseInt(tokens.nextToken());
+                functionOf[loc] = function;
+                size = Math.max(size, loc + 1);
+            } catch (RuntimeException e) {
+                throw new IOException("Bad TM instruction at line " + lineNumber + ": " + line);
+            }
+        }
+        TMSimulator vm = new TMSimulator(op, r, d, s, size, dataSize);
+        vm.functionOf = functionOf;
+        vm.functionNames = functionNames.toArray(new String[0]);
+        return vm;
+    }
+
+    public void setInput(Reader reader) {
+        in = new StreamTokenizer(reader);
+    }
+
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    // Number of instructions executed by the last run
+    public long getSteps() {
+        return steps;
+    }
+
+    // Per location execution counts of the last profiled run
+    public long[] getCounts() {
+        return counts;
+    }
+
+    // Runs from location 0 until HALT or a runtime error, returning the status
+    public int run() throws IOException {
+        Arrays.fill(reg, 0);
+        Arrays.fill(dMem, 0);
+        dMem[0] = dMem.length - 1;
+        counts = profiling ? new long[codeSize] : null;
+
+        int[] op = this.op, r = this.r, d = this.d, s = this.s;
+        int[] reg = this.reg, dMem = this.dMem;
+        long[] counts = this.counts;
+        int pc = 0;
+        long count = 0;
+        int status = -1;
+        while (status < 0) {
+            if (pc < 0 || pc >= codeSize) {
+                status = IMEM_ERR;
+                break;
+            }
+            int i = pc++;
+            reg[PC] = pc;
+            count++;
+            if (counts != null) {
+                counts[i]++;
+            }
+            int a;
+            switch (op[i]) {
+                case CodeGenerator.HALT:
+                    status = HALTED;
+                    break;
+                case CodeGenerator.IN:
+                    in.nextToken();
+                    reg[r[i]] = in.ttype == StreamTokenizer.TT_NUMBER ? (int) in.nval : 0;
+                    break;
+                case CodeGenerator.OUT:
+                    out.println(reg[r[i]]);
+                    break;
+                case CodeGenerator.ADD:
+                    reg[r[i]] = reg[d[i]] + reg[s[i]];
+                    break;
+                case CodeGenerator.SUB:
+                    reg[r[i]] = reg[d[i]] - reg[s[i]];
+                    break;
+                case CodeGenerator.MUL:
+                    reg[r[i]] = reg[d[i]] * reg[s[i]];
+                    break;
+                case CodeGenerator.DIV:
+                    if (reg[s[i]] == 0) {
+                        status = ZERO_DIV;
+                        break;
+                    }
+                    reg[r[i]] = reg[d[i]] / reg[s[i]];
+                    break;
+                case CodeGenerator.LD:
+                    a = d[i] + reg[s[i]];
+                    if (a < 0 || a >= dMem.length) {
+                        status = DMEM_ERR;
+                        break;
+                    }
+                    reg[r[i]] = dMem[a];
+                    break;
+                case CodeGenerator.LDA:
+                    reg[r[i]] = d[i] + reg[s[i]];
+                    break;
+                case CodeGenerator.LDC:
+                    reg[r[i]] = d[i];
+                    break;
+                case CodeGenerator.ST:
+                    a = d[i] + reg[s[i]];
+                    if (a < 0 || a >= dMem.length) {
+                        status = DMEM_ERR;
+                        break;
+                    }
+                    dMem[a] = reg[r[i]];
+                    break;
+                case CodeGenerator.JLT:
+                    if (reg[r[i]] < 0) reg[PC] = d[i] + reg[s[i]];
+                    break;
+                case CodeGenerator.JLE:
+                    if (reg[r[i]] <= 0) reg[PC] = d[i] + reg[s[i]];
+                    break;
+                case CodeGenerator.JGT:
+                    if (reg[r[i]] > 0) reg[PC] = d[i] + reg[s[i]];
+                    break;
+                case CodeGenerator.JGE:
+                    if (reg[r[i]] >= 0) reg[PC] = d[i] + reg[s[i]];
+                    break;
+                case CodeGenerator.JEQ:
+                    if (reg[r[i]] == 0) reg[PC] = d[i] + reg[s[i]];
+                    break;
+                case CodeGenerator.JNE:
+                    if (reg[r[i]] != 0) reg[PC] = d[i] + reg[s[i]];
+                    break;
+            }
+            pc = reg[PC];
+        }
+        steps = count;
+        out.flush();
+        return status;
+    }
+
+    public static String statusMessage(int status) {
+        switch (status) {
+            case HALTED:   return "HALT";
+            case IMEM_ERR: return "Instruction memory fault";
+            case DMEM_ERR: return "Data memory fault";
+            case ZERO_DIV: return "Division by zero";
+            default:       return "Unknown status";
+        }
+    }
+
+    // Prints the counts of the last profiled run: per function, then the hottest instructions
+    public void printProfile(PrintStream p, int topInstructions) {
+        if (counts == null) {
+            return;
+        }
+        p.println("Executed " + steps + " instructions");
+
+        int functionCount = functionNames == null ? 0 : functionNames.length;
+        long[] perFunction = new long[functionCount + 1];
+        for (int i = 0; i < codeSize; i++) {
+            int f = functionOf == null ? -1 : functionOf[i];
+            perFunction[f < 0 ? functionCount : f] += counts[i];
+        }
+        p.println("Instructions per function:");
+        for (int f = 0; f <= functionCount; f++) {
+            if (perFunction[f] == 0) {
+                continue;
+            }
+            String name = f < functionCount ? functionNames[f] : "(runtime)";
+            p.printf("  %-20s %12d  %5.1f%%%n", name, perFunction[f], 100.0 * perFunction[f] / Math.max(steps, 1));
+        }
+
+        Integer[] locs = new Integer[codeSize];
+        for (int i = 0; i < codeSize; i++) {
+            locs[i] = i;
+        }
+        Arrays.sort(locs, (a, b) -> Long.compare(counts[b], counts[a]));
+        p.println("Hottest instructions:");
+        for (int k = 0; k < Math.min(topInstructions, codeSize) && counts[locs[k]] > 0; k++) {
+            int i = locs[k];
+            String where = rows != null && rows[i] >= 0 ? (rows[i] + 1) + ":" + (cols[i] + 1) : "-";
+            String function = functionOf != null && functionOf[i] >= 0 ? functionNames[functionOf[i]] : "(runtime)";
+            String operands = op[i] <= CodeGenerator.DIV ? r[i] + "," + d[i] + "," + s[i]
+                                                          : r[i] + "," + d[i] + "(" + s[i] + ")";
+            p.printf("  %5d: %-5s %-12s %12d  line %-8s %s%n", i, CodeGenerator.OPNAMES[op[i]],
+                     operands, counts[i], where, function);
+        }
+    }
+
+    public static void main(String argv[]) {
+        boolean profile = false;
+        String filename = null;
+        for (int i = 0; i < argv.length; i++) {
+            if (argv[i].equals("-profile")) {
+                profile = true;
+            } else {
+                filename = argv[i];
+            }
+        }
+        if (filename == null) {
+            System.out.println("Usage: java TMSimulator [-profile] filename.tm");
+            System.exit(1);
+        }
+        try {
+            TMSimulator vm = fromListing(new FileReader(filename), DEFAULT_DATA_SIZE);
+            vm.setProfiling(profile);
+            int status = vm.run();
+            if (status != HALTED) {
+                System.err.println("Runtime error: " + statusMessage(status));
+            }
+            if (profile) {
+                vm.printProfile(System.err, 20);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
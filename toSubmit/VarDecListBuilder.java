@@ -0,0 +1,24 @@
+/*
+  Created by: Nathan Brommersma, Ahmad Sawan, Jacob McKenna
+  File Name: VarDecListBuilder.java
+*/
+
+import absyn.*;
+
+/* Same as ExpListBuilder, but for the VarDecList used by parameter and
+   local declaration lists. */
+public class VarDecListBuilder {
+    public VarDecList head;
+    private VarDecList last;
+
+    public VarDecListBuilder(VarDeclExp first) {
+        head = new VarDecList(first, null);
+        last = head;
+    }
+
+    public VarDecListBuilder append(VarDeclExp dec) {
+        last.tail = new VarDecList(dec, null);
+        last = last.tail;
+        return this;
+    }
+}
@@ -0,0 +1,20 @@
+package absyn;
+
+/* What AbsynWalker calls while it walks a tree. pre is called when a
+   node is reached, child before each of the node's child fields in
+   field order (also for fields that are null, which are not walked) and
+   post after the last child has been walked. List cells are not nodes:
+   their elements are walked as children of the node holding the list. */
+public interface AbsynHooks {
+  // Returns false to skip the node's children and post hook
+  boolean pre( Absyn node, int level );
+
+  // Returns the level the child is walked at; slot counts the node's
+  // child fields from 0, e.g. 0 for IfExp.test and 2 for IfExp.elsepart
+  default int child( Absyn node, int slot, Absyn child, int level ) {
+    return level + 1;
+  }
+
+  default void post( Absyn node, int level ) {
+  }
+}
@@ -0,0 +1,313 @@
+package absyn;
+
+import java.util.Arrays;
+
+/* Walks a tree depth first using a bounded amount of the Java call
+   stack, so trees of any depth (long operator chains, deeply nested
+   blocks) can be walked on a thread with the default stack size. The
+   first MAX_RECURSION levels are walked recursively by visiting the
+   nodes, which is faster; subtrees below that are walked with an
+   explicit stack. Every frame of it holds a node, the level it is walked
+   at and the next child field to walk; a list frame holds the next list
+   cell instead. */
+public class AbsynWalker implements AbsynVisitor {
+  // Child fields of each kind of node, in the order they are walked
+  private final static int LEAF = 0, ASSIGN = 1, IF = 2, OP = 3, VARDECL = 4, FUNCTION = 5,
+                           COMPOUND = 6, CALL = 7, WHILE = 8, RETURN = 9, INDEXVAR = 10,
+                           EXPLIST = 11, VARDECLIST = 12;
+  private final static int[] SLOTS = { 0, 2, 3, 2, 1, 3, 2, 1, 2, 1, 1 };
+
+  private final static int MAX_RECURSION = 256;
+
+  private AbsynHooks hooks;
+  // Levels of the tree walked recursively at the moment
+  private int depth;
+
+  // The explicit stack, allocated when a tree is deeper than MAX_RECURSION
+  private Absyn[] nodes;
+  private int[] kinds;
+  private int[] levels;
+  private int[] slots;
+  private int top = -1;
+
+  private AbsynWalker( AbsynHooks hooks ) {
+    this.hooks = hooks;
+  }
+
+  public static void walk( Absyn tree, AbsynHooks hooks, int level ) {
+    if( tree != null ) {
+      new AbsynWalker( hooks ).descend( tree, level );
+    }
+  }
+
+  // Walks a subtree recursively, or with the explicit stack once
+  // MAX_RECURSION levels of the tree are being walked recursively
+  private void descend( Absyn node, int level ) {
+    if( depth == MAX_RECURSION ) {
+      run( node, hooks, level );
+      return;
+    }
+    depth++;
+    node.accept( this, level );
+    depth--;
+  }
+
+  private void walkChild( Absyn node, int slot, Absyn child, int level ) {
+    int childLevel = hooks.child( node, slot, child, level );
+    if( child != null ) {
+      descend( child, childLevel );
+    }
+  }
+
+  // The recursive walk, visiting children in the order child() has them
+
+  public void visit( ExpList list, int level ) {
+    for( ; list != null; list = list.tail ) {
+      if( list.head != null ) {
+        descend( list.head, level );
+      }
+    }
+  }
+
+  public void visit( VarDecList list, int level ) {
+    for( ; list != null; list = list.tail ) {
+      if( list.head != null ) {
+        descend( list.head, level );
+      }
+    }
+  }
+
+  public void visit( AssignExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.lhs, level );
+      walkChild( exp, 1, exp.rhs, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( IfExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.test, level );
+      walkChild( exp, 1, exp.thenpart, level );
+      walkChild( exp, 2, exp.elsepart, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( OpExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.left, level );
+      walkChild( exp, 1, exp.right, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( VarDeclExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.type, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( FunctionDec exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.result, level );
+      walkChild( exp, 1, exp.params, level );
+      walkChild( exp, 2, exp.body, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( CompoundExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.decs, level );
+      walkChild( exp, 1, exp.exps, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( CallExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.args, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( WhileExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.test, level );
+      walkChild( exp, 1, exp.body, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( ReturnExp exp, int level ) {
+    if( hooks.pre( exp, level ) ) {
+      walkChild( exp, 0, exp.exp, level );
+      hooks.post( exp, level );
+    }
+  }
+
+  public void visit( IndexVar var, int level ) {
+    if( hooks.pre( var, level ) ) {
+      walkChild( var, 0, var.index, level );
+      hooks.post( var, level );
+    }
+  }
+
+  public void visit( IntExp exp, int level ) {
+    leaf( exp, level );
+  }
+
+  public void visit( TypeExp exp, int level ) {
+    leaf( exp, level );
+  }
+
+  public void visit( SimpleVar var, int level ) {
+    leaf( var, level );
+  }
+
+  public void visit( NilExp exp, int level ) {
+    leaf( exp, level );
+  }
+
+  public void visit( BoolExp exp, int level ) {
+    leaf( exp, level );
+  }
+
+  private void leaf( Absyn node, int level ) {
+    if( hooks.pre( node, level ) ) {
+      hooks.post( node, level );
+    }
+  }
+
+  private void run( Absyn tree, AbsynHooks hooks, int level ) {
+    if( nodes == null ) {
+      nodes = new Absyn[64];
+      kinds = new int[64];
+      levels = new int[64];
+      slots = new int[64];
+    }
+    push( tree, level );
+    while( top >= 0 ) {
+      int t = top;
+      Absyn node = nodes[t];
+      int kind = kinds[t];
+
+      if( kind == EXPLIST ) {
+        ExpList list = (ExpList) node;
+        if( list == null ) {
+          top--;
+        } else {
+          nodes[t] = list.tail;
+          push( list.head, levels[t] );
+        }
+        continue;
+      }
+      if( kind == VARDECLIST ) {
+        VarDecList list = (VarDecList) node;
+        if( list == null ) {
+          top--;
+        } else {
+          nodes[t] = list.tail;
+          push( list.head, levels[t] );
+        }
+        continue;
+      }
+
+      int slot = slots[t];
+      if( slot < 0 ) {
+        if( !hooks.pre( node, levels[t] ) ) {
+          top--;
+          continue;
+        }
+        slot = 0;
+      }
+      if( slot == SLOTS[kind] ) {
+        top--;
+        hooks.post( node, levels[t] );
+        continue;
+      }
+      slots[t] = slot + 1;
+      Absyn child = child( node, kind, slot );
+      int childLevel = hooks.child( node, slot, child, levels[t] );
+      if( child != null ) {
+        push( child, childLevel );
+      }
+    }
+  }
+
+  private void push( Absyn node, int level ) {
+    if( node == null ) {
+      return;
+    }
+    if( ++top == nodes.length ) {
+      nodes = Arrays.copyOf( nodes, top * 2 );
+      kinds = Arrays.copyOf( kinds, top * 2 );
+      levels = Arrays.copyOf( levels, top * 2 );
+      slots = Arrays.copyOf( slots, top * 2 );
+    }
+    nodes[top] = node;
+    kinds[top] = kind( node );
+    levels[top] = level;
+    slots[top] = -1;
+  }
+
+  private static int kind( Absyn node ) {
+    if( node instanceof Exp ) {
+      if( node instanceof OpExp ) return OP;
+      if( node instanceof AssignExp ) return ASSIGN;
+      if( node instanceof CompoundExp ) return COMPOUND;
+      if( node instanceof IfExp ) return IF;
+      if( node instanceof WhileExp ) return WHILE;
+      if( node instanceof CallExp ) return CALL;
+      if( node instanceof ReturnExp ) return RETURN;
+      if( node instanceof IndexVar ) return INDEXVAR;
+      if( node instanceof VarDeclExp ) return VARDECL;
+      if( node instanceof FunctionDec ) return FUNCTION;
+      return LEAF;
+    }
+    if( node instanceof ExpList ) return EXPLIST;
+    if( node instanceof VarDecList ) return VARDECLIST;
+    return LEAF;
+  }
+
+  private static Absyn child( Absyn node, int kind, int slot ) {
+    switch( kind ) {
+      case ASSIGN: {
+        AssignExp exp = (AssignExp) node;
+        return slot == 0 ? exp.lhs : exp.rhs;
+      }
+      case IF: {
+        IfExp exp = (IfExp) node;
+        return slot == 0 ? exp.test : slot == 1 ? exp.thenpart : exp.elsepart;
+      }
+      case OP: {
+        OpExp exp = (OpExp) node;
+        return slot == 0 ? exp.left : exp.right;
+      }
+      case VARDECL:
+        return ((VarDeclExp) node).type;
+      case FUNCTION: {
+        FunctionDec exp = (FunctionDec) node;
+        return slot == 0 ? exp.result : slot == 1 ? exp.params : exp.body;
+      }
+      case COMPOUND: {
+        CompoundExp exp = (CompoundExp) node;
+        return slot == 0 ? exp.decs : exp.exps;
+      }
+      case CALL:
+        return ((CallExp) node).args;
+      case WHILE: {
+        WhileExp exp = (WhileExp) node;
+        return slot == 0 ? exp.test : exp.body;
+      }
+      case RETURN:
+        return ((ReturnExp) node).exp;
+      case INDEXVAR:
+        return ((IndexVar) node).index;
+      default:
+        return null;
+    }
+  }
+}
@@ -1,16 +1,28 @@
 package absyn;
 
 public class CallExp extends Exp {
-  public String func;
+  public int funcId; // Names ID of func
   public ExpList args;
+  public FunctionDec target; // set by the interpreter's resolution pass, null for built-ins
   
   public CallExp(int row, int col, String func, ExpList args) {
     this.row = row;
     this.col = col;
-    this.func = func;
+    this.funcId = Names.id(func);
+    this.args = args;
+  }
+
+  public CallExp(int row, int col, int funcId, ExpList args) {
+    this.row = row;
+    this.col = col;
+    this.funcId = funcId;
     this.args = args;
   }
   
+  public String func() {
+    return Names.name(funcId);
+  }
+
   public void accept(AbsynVisitor visitor, int level) {
     visitor.visit(this, level);
   }
@@ -1,4 +1,9 @@
 package absyn;
 
 abstract public class Exp extends Absyn {
+  /* Filled in by the semantic analyzer: the resolved type (a TypeExp
+     constant, -1 until analyzed) and, for variables and calls, the symbol
+     table entry the name resolved to. */
+  public int dtype = -1;
+  public Object binding;
 }
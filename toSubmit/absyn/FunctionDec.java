@@ -2,19 +2,34 @@ package absyn;
 
 public class FunctionDec extends Exp {
   public TypeExp result;
-  public String name;
+  public int id; // Names ID of name
   public VarDecList params;
   public CompoundExp body;
+  public int frameSize; // slots needed by one activation, set by the interpreter
+  public int[] arrays; // slot and length of each local array, set by the interpreter
   
   public FunctionDec(int row, int col, TypeExp result, String name, VarDecList params, CompoundExp body) {
     this.row = row;
     this.col = col;
     this.result = result;
-    this.name = name;
+    this.id = Names.id(name);
+    this.params = params;
+    this.body = body;
+  }
+
+  public FunctionDec(int row, int col, TypeExp result, int id, VarDecList params, CompoundExp body) {
+    this.row = row;
+    this.col = col;
+    this.result = result;
+    this.id = id;
     this.params = params;
     this.body = body;
   }
   
+  public String name() {
+    return Names.name(id);
+  }
+
   public void accept(AbsynVisitor visitor, int level) {
     visitor.visit(this, level);
   }
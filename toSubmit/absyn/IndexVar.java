@@ -1,16 +1,27 @@
 package absyn;
 
 public class IndexVar extends Var {
-  public String name;
+  public int id; // Names ID of name
   public Exp index;
   
   public IndexVar(int row, int col, String name, Exp index) {
     this.row = row;
     this.col = col;
-    this.name = name;
+    this.id = Names.id(name);
+    this.index = index;
+  }
+
+  public IndexVar(int row, int col, int id, Exp index) {
+    this.row = row;
+    this.col = col;
+    this.id = id;
     this.index = index;
   }
   
+  public String name() {
+    return Names.name(id);
+  }
+
   public void accept(AbsynVisitor visitor, int level) {
     visitor.visit(this, level);
   }
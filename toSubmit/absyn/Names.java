@@ -0,0 +1,43 @@
+package absyn;
+
+import java.util.HashMap;
+
+/* Dense int IDs for identifiers, shared by every compilation in the
+   process. The Lexer asks for the ID of a name the first time it sees
+   it and the AST carries IDs from then on, so later phases compare and
+   index by int. IDs start at 0 and are never reused; id() is
+   synchronized, and name() reads the table without locking. That is
+   safe for any ID obtained from id() on the same thread or published to
+   another thread afterwards (e.g. through an executor), even while
+   lexers on other threads add names: a grown table is filled before it
+   is published through the volatile field, so whichever table name()
+   reads holds every ID its thread can know of. The table only grows,
+   so per-program tables keyed by ID go through an IdIndex instead of
+   being sized by the largest ID, and nodes keep only the ID. */
+public class Names {
+  private static final HashMap<String, Integer> ids = new HashMap<>();
+  private static volatile String[] names = new String[256];
+  private static int count;
+
+  // The ID of a name, assigning the next one if the name is new
+  public static synchronized int id(String name) {
+    Integer id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    String[] table = names;
+    if (count == table.length) {
+      String[] grown = new String[count * 2];
+      System.arraycopy(table, 0, grown, 0, count);
+      names = grown;
+      table = grown;
+    }
+    table[count] = name;
+    ids.put(name, count);
+    return count++;
+  }
+
+  public static String name(int id) {
+    return names[id];
+  }
+}
@@ -1,14 +1,24 @@
 package absyn;
 
 public class SimpleVar extends Var {
-  public String name;
+  public int id; // Names ID of name
   
   public SimpleVar(int row, int col, String name) {
     this.row = row;
     this.col = col;
-    this.name = name;
+    this.id = Names.id(name);
+  }
+
+  public SimpleVar(int row, int col, int id) {
+    this.row = row;
+    this.col = col;
+    this.id = id;
   }
   
+  public String name() {
+    return Names.name(id);
+  }
+
   public void accept(AbsynVisitor visitor, int level) {
     visitor.visit(this, level);
   }
@@ -1,4 +1,12 @@
 package absyn;
 
 abstract public class Var extends Exp {
-}
\ No newline at end of file
+  /* Storage filled in by the interpreter's resolution pass: slot is an
+     index into global memory when isGlobal, otherwise into the current
+     frame. isReference marks an array parameter whose slot holds the
+     address of the array. */
+  public int slot = -1;
+  public boolean isGlobal;
+  public boolean isArray;
+  public boolean isReference;
+}
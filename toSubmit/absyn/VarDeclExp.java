@@ -2,17 +2,29 @@ package absyn;
 
 public class VarDeclExp extends Exp {
   public TypeExp type;
-  public String name;
+  public int id; // Names ID of name
   public int size;
   
   public VarDeclExp(int row, int col, TypeExp type, String name, int size) {
     this.row = row;
     this.col = col;
     this.type = type;
-    this.name = name;
+    this.id = Names.id(name);
+    this.size = size;
+  }
+
+  public VarDeclExp(int row, int col, TypeExp type, int id, int size) {
+    this.row = row;
+    this.col = col;
+    this.type = type;
+    this.id = id;
     this.size = size;
   }
   
+  public String name() {
+    return Names.name(id);
+  }
+
   public void accept(AbsynVisitor visitor, int level) {
     visitor.visit(this, level);
   }